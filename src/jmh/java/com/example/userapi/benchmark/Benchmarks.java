@@ -0,0 +1,43 @@
+package com.example.userapi.benchmark;
+
+import com.example.userapi.config.BatchingProperties;
+import com.example.userapi.config.BloomFilterProperties;
+import com.example.userapi.config.CreateBatchingProperties;
+import com.example.userapi.config.ReplicaProperties;
+import com.example.userapi.repository.ReadYourWrites;
+import com.example.userapi.repository.UserRepository;
+import com.example.userapi.service.UserBatchLoader;
+import com.example.userapi.service.UserCreateCoalescer;
+import com.example.userapi.service.UserExistenceFilter;
+import com.example.userapi.service.UserRequestCoalescer;
+import com.example.userapi.service.UserService;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.springframework.cache.concurrent.ConcurrentMapCacheManager;
+import org.springframework.cache.support.NoOpCacheManager;
+
+/**
+ * Wires a {@link UserService} by hand with the defaults from {@code application.properties}, so
+ * that benchmarks do not pay for a Spring context.
+ * <p>
+ * Without Spring there is no caching proxy, so {@code @CachePut} and {@code @CacheEvict} do
+ * nothing. Only {@link UserService#get} uses the cache itself: with {@code cached} every lookup
+ * after the first is a hit for the same id, without it every lookup reaches the repository.
+ */
+final class Benchmarks {
+
+    private Benchmarks() {
+    }
+
+    static UserService userService(UserRepository userRepository, boolean cached) {
+        MeterRegistry meterRegistry = new SimpleMeterRegistry();
+        ReadYourWrites readYourWrites = new ReadYourWrites(new ReplicaProperties());
+        return new UserService(userRepository,
+                new UserExistenceFilter(new BloomFilterProperties(), userRepository, meterRegistry),
+                cached ? new ConcurrentMapCacheManager(UserService.USERS_CACHE) : new NoOpCacheManager(),
+                new UserRequestCoalescer(meterRegistry),
+                new UserBatchLoader(new BatchingProperties(), userRepository, readYourWrites, meterRegistry),
+                new UserCreateCoalescer(new CreateBatchingProperties(), userRepository, readYourWrites, meterRegistry),
+                readYourWrites);
+    }
+}
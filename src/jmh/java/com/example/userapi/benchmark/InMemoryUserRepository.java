@@ -0,0 +1,102 @@
+package com.example.userapi.benchmark;
+
+import com.example.userapi.dto.BulkOperationDTO;
+import com.example.userapi.dto.BulkResultDTO;
+import com.example.userapi.entity.User;
+import com.example.userapi.repository.UserRepository;
+import org.springframework.http.HttpStatus;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * {@link UserRepository} over a sorted map, so that benchmarks of the layers above the repository
+ * measure those layers and not the database.
+ */
+public class InMemoryUserRepository implements UserRepository {
+
+    private final ConcurrentSkipListMap<Long, User> users = new ConcurrentSkipListMap<>();
+    private final AtomicLong ids = new AtomicLong();
+
+    public InMemoryUserRepository(int size) {
+        for (int i = 0; i < size; i++) {
+            long id = ids.incrementAndGet();
+            users.put(id, new User(id, "User " + id, "user" + id + "@ya.ru", 0L));
+        }
+    }
+
+    @Override
+    public Mono<User> create(User user) {
+        long id = ids.incrementAndGet();
+        User created = new User(id, user.getName(), user.getEmail(), 0L);
+        users.put(id, created);
+        return Mono.just(created);
+    }
+
+    @Override
+    public Mono<User> update(User user) {
+        return Mono.justOrEmpty(users.computeIfPresent(user.getId(), (id, u) -> new User(id, user.getName(), user.getEmail(), u.getVersion() + 1)));
+    }
+
+    @Override
+    public Mono<User> patch(User user) {
+        return Mono.justOrEmpty(users.computeIfPresent(user.getId(), (id, u) -> new User(id,
+                Objects.requireNonNullElse(user.getName(), u.getName()),
+                Objects.requireNonNullElse(user.getEmail(), u.getEmail()),
+                u.getVersion() + 1)));
+    }
+
+    @Override
+    public Mono<Boolean> delete(Long id) {
+        return Mono.just(users.remove(id) != null);
+    }
+
+    @Override
+    public Mono<User> get(Long id) {
+        return Mono.justOrEmpty(users.get(id));
+    }
+
+    @Override
+    public Flux<User> getAll(Long afterId, int limit) {
+        return Flux.fromIterable(users.tailMap(afterId, false).values()).take(limit);
+    }
+
+    @Override
+    public Flux<User> getAllById(Collection<Long> ids) {
+        return Flux.fromIterable(ids).mapNotNull(users::get);
+    }
+
+    @Override
+    public Flux<User> search(String query, int limit) {
+        String prefix = query.toLowerCase();
+        return Flux.fromIterable(users.values())
+                .filter(u -> u.getName().toLowerCase().startsWith(prefix) || u.getEmail().toLowerCase().startsWith(prefix))
+                .take(limit);
+    }
+
+    @Override
+    public Mono<Boolean> existsByEmail(String email) {
+        return Mono.just(users.values().stream().anyMatch(u -> u.getEmail().equals(email)));
+    }
+
+    @Override
+    public Flux<User> stream(int fetchSize) {
+        return Flux.fromIterable(users.values());
+    }
+
+    @Override
+    public Mono<List<BulkResultDTO>> bulk(List<BulkOperationDTO> operations) {
+        return Flux.fromIterable(operations)
+                .map(operation -> BulkResultDTO.builder()
+                        .op(operation.getOp())
+                        .id(Objects.requireNonNullElse(operation.getId(), ids.incrementAndGet()))
+                        .status(HttpStatus.OK.value())
+                        .build())
+                .collectList();
+    }
+}
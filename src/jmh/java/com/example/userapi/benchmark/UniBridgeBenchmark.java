@@ -0,0 +1,38 @@
+package com.example.userapi.benchmark;
+
+import com.example.userapi.entity.User;
+import io.smallrye.mutiny.Uni;
+import org.openjdk.jmh.annotations.*;
+import reactor.core.publisher.Mono;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The {@code Uni -> CompletableFuture -> Mono} conversion that {@code UserRepositoryImpl} applies
+ * to every Hibernate Reactive call, against a plain {@link Mono} as the baseline.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class UniBridgeBenchmark {
+
+    private final User user = new User(1L, "Ivan", "ivan@ya.ru");
+
+    @Benchmark
+    public User mono() {
+        return Mono.just(user).block();
+    }
+
+    @Benchmark
+    public User uniThroughFuture() {
+        return Mono.fromFuture(Uni.createFrom().item(user).convert().toCompletableFuture()).block();
+    }
+
+    @Benchmark
+    public User uniThroughFutureSupplier() {
+        return Mono.fromFuture(() -> Uni.createFrom().item(user).convert().toCompletableFuture()).block();
+    }
+}
@@ -0,0 +1,90 @@
+package com.example.userapi.benchmark;
+
+import com.example.userapi.codec.UserJsonEncoder;
+import com.example.userapi.controller.UserControllerImpl;
+import com.example.userapi.exception.ExceptionInfoHandler;
+import com.example.userapi.service.UserService;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.context.annotation.AnnotationConfigApplicationContext;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.http.server.reactive.HttpHandler;
+import org.springframework.mock.http.server.reactive.MockServerHttpRequest;
+import org.springframework.mock.http.server.reactive.MockServerHttpResponse;
+import org.springframework.web.reactive.config.EnableWebFlux;
+import org.springframework.web.server.adapter.WebHttpHandlerBuilder;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Request routing, argument resolution and response encoding of {@link UserControllerImpl} over
+ * {@link InMemoryUserRepository}, driven through the WebFlux {@link HttpHandler} with mock
+ * requests, without a network hop.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class UserControllerBenchmark {
+
+    /**
+     * Whether {@code User} bodies go through {@link UserJsonEncoder} instead of Jackson.
+     */
+    @Param({"false", "true"})
+    private boolean userEncoder;
+
+    private AnnotationConfigApplicationContext context;
+    private HttpHandler httpHandler;
+
+    @Setup
+    public void setUp() {
+        context = new AnnotationConfigApplicationContext();
+        context.register(WebConfig.class);
+        if (userEncoder) context.register(com.example.userapi.config.WebConfig.class);
+        context.refresh();
+        httpHandler = WebHttpHandlerBuilder.applicationContext(context).build();
+    }
+
+    @TearDown
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public String get() {
+        return exchange(MockServerHttpRequest.get("/users/42").build());
+    }
+
+    @Benchmark
+    public String getAll() {
+        return exchange(MockServerHttpRequest.get("/users?limit=100").build());
+    }
+
+    private String exchange(MockServerHttpRequest request) {
+        MockServerHttpResponse response = new MockServerHttpResponse();
+        httpHandler.handle(request, response).block();
+        return response.getBodyAsString().block();
+    }
+
+    @Configuration
+    @EnableWebFlux
+    static class WebConfig {
+
+        @Bean
+        UserService userService() {
+            return Benchmarks.userService(new InMemoryUserRepository(10_000), false);
+        }
+
+        @Bean
+        UserControllerImpl userController(UserService userService) {
+            return new UserControllerImpl(userService);
+        }
+
+        @Bean
+        ExceptionInfoHandler exceptionInfoHandler() {
+            return new ExceptionInfoHandler();
+        }
+    }
+}
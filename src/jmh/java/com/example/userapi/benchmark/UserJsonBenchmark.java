@@ -0,0 +1,95 @@
+package com.example.userapi.benchmark;
+
+import com.example.userapi.codec.UserJsonEncoder;
+import com.example.userapi.entity.User;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import io.netty.buffer.PooledByteBufAllocator;
+import org.openjdk.jmh.annotations.*;
+import org.reactivestreams.Publisher;
+import org.springframework.core.ResolvableType;
+import org.springframework.core.codec.Encoder;
+import org.springframework.core.io.buffer.DataBufferUtils;
+import org.springframework.core.io.buffer.NettyDataBufferFactory;
+import org.springframework.http.MediaType;
+import org.springframework.http.codec.json.Jackson2JsonEncoder;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.LongStream;
+
+/**
+ * Serialization of a page of users, as written for {@code GET /users}: plain Jackson into a byte
+ * array, and the WebFlux path of {@link Jackson2JsonEncoder} against {@link UserJsonEncoder}, both
+ * into pooled Netty buffers.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class UserJsonBenchmark {
+
+    private static final ResolvableType USER = ResolvableType.forClass(User.class);
+
+    @Param({"100", "1000"})
+    private int size;
+
+    private ObjectWriter writer;
+    private List<User> users;
+    private NettyDataBufferFactory bufferFactory;
+    private Jackson2JsonEncoder jacksonEncoder;
+    private UserJsonEncoder userEncoder;
+
+    @Setup
+    public void setUp() {
+        writer = new ObjectMapper().writerFor(List.class);
+        users = LongStream.rangeClosed(1, size)
+                .mapToObj(id -> new User(id, "User " + id, "user" + id + "@ya.ru"))
+                .toList();
+        bufferFactory = new NettyDataBufferFactory(PooledByteBufAllocator.DEFAULT);
+        jacksonEncoder = new Jackson2JsonEncoder();
+        userEncoder = new UserJsonEncoder();
+    }
+
+    @Benchmark
+    public byte[] writeList() throws Exception {
+        return writer.writeValueAsBytes(users);
+    }
+
+    @Benchmark
+    public long jacksonEncoderList() {
+        return encode(jacksonEncoder, Flux.fromIterable(users));
+    }
+
+    @Benchmark
+    public long userEncoderList() {
+        return encode(userEncoder, Flux.fromIterable(users));
+    }
+
+    @Benchmark
+    public long jacksonEncoderSingle() {
+        return encode(jacksonEncoder, Mono.just(users.get(0)));
+    }
+
+    @Benchmark
+    public long userEncoderSingle() {
+        return encode(userEncoder, Mono.just(users.get(0)));
+    }
+
+    @SuppressWarnings("unchecked")
+    private long encode(Encoder<?> encoder, Publisher<User> input) {
+        return ((Encoder<User>) encoder).encode(input, bufferFactory, USER, MediaType.APPLICATION_JSON, Map.of())
+                .map(buffer -> {
+                    int bytes = buffer.readableByteCount();
+                    DataBufferUtils.release(buffer);
+                    return (long) bytes;
+                })
+                .reduce(0L, Long::sum)
+                .block();
+    }
+}
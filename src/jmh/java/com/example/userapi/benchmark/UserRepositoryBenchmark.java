@@ -0,0 +1,109 @@
+package com.example.userapi.benchmark;
+
+import com.example.userapi.config.PgPoolProperties;
+import com.example.userapi.config.ReplicaProperties;
+import com.example.userapi.entity.User;
+import com.example.userapi.repository.ReadYourWrites;
+import com.example.userapi.repository.ReplicaRouter;
+import com.example.userapi.repository.UserRepository;
+import com.example.userapi.repository.UserRepositoryImpl;
+import com.example.userapi.service.UserService;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jakarta.persistence.EntityManagerFactory;
+import org.flywaydb.core.Flyway;
+import org.hibernate.reactive.mutiny.Mutiny;
+import org.openjdk.jmh.annotations.*;
+import org.testcontainers.containers.PostgreSQLContainer;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import static jakarta.persistence.Persistence.createEntityManagerFactory;
+
+/**
+ * End-to-end {@link UserService} calls through {@link UserRepositoryImpl} against Postgres. Uses
+ * the database given by {@code -Djmh.db.url} (with {@code jmh.db.user} and {@code jmh.db.password})
+ * when set, otherwise starts one with Testcontainers. Setup drops everything in the database first,
+ * so a given database is only used together with {@code -Djmh.db.clean=true}.
+ * <p>
+ * {@link #get} reads the same id every time, so only the uncached variant goes to the database.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+@Threads(8)
+public class UserRepositoryBenchmark {
+
+    private static final int USERS = 10_000;
+
+    @Param({"100"})
+    private int limit;
+
+    @Param({"false", "true"})
+    private boolean cached;
+
+    private PostgreSQLContainer<?> postgres;
+    private EntityManagerFactory entityManagerFactory;
+    private UserService userService;
+
+    @Setup
+    public void setUp() {
+        String url = System.getProperty("jmh.db.url");
+        String user = System.getProperty("jmh.db.user", "user");
+        String password = System.getProperty("jmh.db.password", "passwd");
+        if (url != null && !Boolean.getBoolean("jmh.db.clean")) {
+            throw new IllegalStateException("Setup cleans " + url + ", pass -Djmh.db.clean=true to allow it");
+        }
+        if (url == null) {
+            postgres = new PostgreSQLContainer<>("postgres:latest")
+                    .withDatabaseName("userapi_db_jmh")
+                    .withUsername(user)
+                    .withPassword(password);
+            postgres.start();
+            url = postgres.getJdbcUrl();
+        }
+        Flyway flyway = Flyway.configure().cleanDisabled(false).dataSource(url, user, password).load();
+        flyway.clean();
+        flyway.migrate();
+
+        Map<String, Object> settings = new PgPoolProperties().toSettings();
+        settings.put("jakarta.persistence.jdbc.url", url);
+        settings.put("jakarta.persistence.jdbc.user", user);
+        settings.put("jakarta.persistence.jdbc.password", password);
+        entityManagerFactory = createEntityManagerFactory("dbSettings", settings);
+        Mutiny.SessionFactory sessionFactory = entityManagerFactory.unwrap(Mutiny.SessionFactory.class);
+        ReplicaProperties replicaProperties = new ReplicaProperties();
+        ReplicaRouter replicaRouter = new ReplicaRouter(sessionFactory, List.of(), replicaProperties,
+                new ReadYourWrites(replicaProperties), new SimpleMeterRegistry());
+        UserRepository userRepository = new UserRepositoryImpl(sessionFactory, replicaRouter);
+        userService = Benchmarks.userService(userRepository, cached);
+        for (int i = 0; i < USERS; i++) {
+            userRepository.create(new User("User " + i, "user" + i + "@ya.ru")).block();
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        entityManagerFactory.close();
+        if (postgres != null) postgres.stop();
+    }
+
+    @Benchmark
+    public User get() {
+        return userService.get(42L).block();
+    }
+
+    @Benchmark
+    public User update() {
+        return userService.update(new User(42L, "Ivan", "user41@ya.ru")).block();
+    }
+
+    @Benchmark
+    public List<User> getAll() {
+        return userService.getAll(0L, limit).collectList().block();
+    }
+}
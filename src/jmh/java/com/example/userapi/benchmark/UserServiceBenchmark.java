@@ -0,0 +1,51 @@
+package com.example.userapi.benchmark;
+
+import com.example.userapi.entity.User;
+import com.example.userapi.service.UserService;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link UserService} over {@link InMemoryUserRepository}: the cost of the service layer itself,
+ * including the existence filter, request coalescing and Reactor assembly. {@link #get} reads the
+ * same id every time, so with {@code cached} it measures a cache hit and without it the batch
+ * loader and the repository.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class UserServiceBenchmark {
+
+    @Param({"100"})
+    private int limit;
+
+    @Param({"false", "true"})
+    private boolean cached;
+
+    private UserService userService;
+
+    @Setup
+    public void setUp() {
+        userService = Benchmarks.userService(new InMemoryUserRepository(10_000), cached);
+    }
+
+    @Benchmark
+    public User get() {
+        return userService.get(42L).block();
+    }
+
+    @Benchmark
+    public User update() {
+        return userService.update(new User(42L, "Ivan", "ivan@ya.ru")).block();
+    }
+
+    @Benchmark
+    public List<User> getAll() {
+        return userService.getAll(0L, limit).collectList().block();
+    }
+}
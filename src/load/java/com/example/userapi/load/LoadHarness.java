@@ -0,0 +1,263 @@
+package com.example.userapi.load;
+
+import com.example.userapi.util.UserUtils;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.HttpStatusCode;
+import org.springframework.http.client.reactive.ReactorClientHttpConnector;
+import org.springframework.web.reactive.function.client.WebClient;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.netty.http.client.HttpClient;
+import reactor.netty.resources.ConnectionProvider;
+
+import java.io.File;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.time.Duration;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+import java.util.stream.Stream;
+
+/**
+ * Open-model load generator for the {@code /users} endpoints of a running application. Requests
+ * are started at a fixed {@link LoadSettings#rate()} whether or not earlier ones have completed,
+ * and their latency is recorded from the scheduled start, so a slow server cannot hide behind a
+ * slower request rate.
+ * <p>
+ * Start the application against a local Postgres with the repository mode and settings to
+ * compare, then run {@code mvn -P load test-compile exec:java} with the {@code load.*} system
+ * properties described in {@link LoadSettings}. At the end the harness prints and writes to
+ * {@code target/load-result.json}:
+ * <ul>
+ *     <li>p50/p99/p99.9 latency and throughput per operation</li>
+ *     <li>the peak pool gauges of the application, sampled every second</li>
+ *     <li>GC pauses of the application during the run, and of the harness itself</li>
+ * </ul>
+ */
+public final class LoadHarness {
+
+    private static final List<String> POOL_METRICS = List.of(
+            "users.db.pool.in.use", "users.db.pool.pending", "users.db.pool.usage", "users.db.pool.statements.in.flight");
+
+    private static final String PRIMARY_POOL = "pool:primary";
+
+    private static final Duration DRAIN_TIMEOUT = Duration.ofSeconds(30);
+
+    private static final int LIST_LIMIT = 100;
+
+    private final LoadSettings settings;
+    private final WebClient client;
+    private final UserIds userIds = new UserIds();
+    private final Map<Operation, OperationStats> stats = new EnumMap<>(Operation.class);
+    private final Map<String, Double> poolPeaks = new ConcurrentHashMap<>();
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final AtomicLong emails = new AtomicLong();
+    private final String runId = Long.toString(System.currentTimeMillis(), 36);
+    private final Operation[] mix;
+
+    LoadHarness(LoadSettings settings, WebClient client) {
+        this.settings = settings;
+        this.client = client;
+        for (Operation operation : Operation.values()) stats.put(operation, new OperationStats());
+        this.mix = settings.mix().entrySet().stream()
+                .flatMap(weight -> Stream.generate(weight::getKey).limit(weight.getValue()))
+                .toArray(Operation[]::new);
+    }
+
+    public static void main(String[] args) throws Exception {
+        LoadSettings settings = LoadSettings.fromSystemProperties();
+        ConnectionProvider connections = ConnectionProvider.builder("load")
+                .maxConnections(settings.maxInFlight())
+                .pendingAcquireMaxCount(-1)
+                .build();
+        WebClient client = WebClient.builder()
+                .baseUrl(settings.baseUrl())
+                .clientConnector(new ReactorClientHttpConnector(HttpClient.create(connections)))
+                .build();
+        try {
+            new LoadHarness(settings, client).run();
+        } finally {
+            connections.dispose();
+        }
+    }
+
+    void run() throws Exception {
+        System.out.printf("Seeding %d users at %s%n", settings.seedUsers(), settings.baseUrl());
+        Flux.range(0, settings.seedUsers())
+                .flatMap(i -> create(), 64)
+                .blockLast();
+
+        Map<String, Double> serverGcBefore = serverGc();
+        Map<String, Long> harnessGcBefore = harnessGc();
+        Disposable poolSampler = Flux.interval(Duration.ofSeconds(1))
+                .flatMap(tick -> Flux.fromIterable(POOL_METRICS)
+                        .flatMap(name -> metric(name, PRIMARY_POOL, "VALUE").map(value -> Map.entry(name, value))))
+                .subscribe(sample -> poolPeaks.merge(sample.getKey(), sample.getValue(), Math::max));
+
+        System.out.printf("Running %.0f req/s for %s (first %s not measured)%n", settings.rate(), settings.duration(), settings.warmup());
+        long interval = (long) (1_000_000_000L / settings.rate());
+        long requests = settings.duration().toNanos() / interval;
+        long warmup = settings.warmup().toNanos();
+        long start = System.nanoTime();
+        for (long i = 0; i < requests; i++) {
+            long scheduled = start + i * interval;
+            long wait = scheduled - System.nanoTime();
+            if (wait > 0) LockSupport.parkNanos(wait);
+            fire(mix[ThreadLocalRandom.current().nextInt(mix.length)], scheduled, scheduled - start >= warmup);
+        }
+        long end = System.nanoTime();
+        long deadline = end + DRAIN_TIMEOUT.toNanos();
+        while (inFlight.get() > 0 && System.nanoTime() < deadline) Thread.sleep(10);
+        poolSampler.dispose();
+
+        report((end - start - Math.min(warmup, end - start)) / 1e9, serverGcBefore, serverGc(), harnessGcBefore, harnessGc());
+    }
+
+    private void fire(Operation operation, long scheduled, boolean measured) {
+        OperationStats operationStats = stats.get(operation);
+        if (inFlight.get() >= settings.maxInFlight()) {
+            if (measured) operationStats.drop();
+            return;
+        }
+        inFlight.incrementAndGet();
+        long sent = System.nanoTime();
+        execute(operation)
+                .onErrorReturn(false)
+                .defaultIfEmpty(false)
+                .subscribe(ok -> {
+                    inFlight.decrementAndGet();
+                    if (measured) operationStats.record(scheduled, sent, System.nanoTime(), !ok);
+                });
+    }
+
+    private Mono<Boolean> execute(Operation operation) {
+        return switch (operation) {
+            case GET -> {
+                Long id = userIds.random();
+                yield id == null ? list() : client.get().uri("/users/{id}", id)
+                        .exchangeToMono(response -> response.releaseBody().thenReturn(ok(response.statusCode())));
+            }
+            case LIST -> list();
+            case CREATE -> create().hasElement();
+            case UPDATE -> {
+                Long id = userIds.random();
+                yield id == null ? create().hasElement() : client.put().uri("/users")
+                        .bodyValue(Map.of("id", id, "name", "Updated " + id, "email", nextEmail()))
+                        .exchangeToMono(response -> response.releaseBody().thenReturn(ok(response.statusCode())));
+            }
+            case DELETE -> {
+                Long id = userIds.removeRandom();
+                yield id == null ? list() : client.delete().uri("/users/{id}", id)
+                        .exchangeToMono(response -> response.releaseBody().thenReturn(ok(response.statusCode())));
+            }
+        };
+    }
+
+    private Mono<Boolean> list() {
+        Long after = userIds.random();
+        return client.get()
+                .uri(uri -> {
+                    uri.path("/users").queryParam("limit", LIST_LIMIT);
+                    if (after != null) uri.queryParam("after", UserUtils.encodeCursor(after));
+                    return uri.build();
+                })
+                .exchangeToMono(response -> response.releaseBody().thenReturn(ok(response.statusCode())));
+    }
+
+    private Mono<Long> create() {
+        return client.post().uri("/users")
+                .bodyValue(Map.of("name", "Load " + runId, "email", nextEmail()))
+                .exchangeToMono(response -> response.statusCode().is2xxSuccessful()
+                        ? response.bodyToMono(JsonNode.class).map(user -> user.path("id").asLong())
+                        : response.releaseBody().then(Mono.empty()))
+                .doOnNext(userIds::add);
+    }
+
+    private String nextEmail() {
+        return "load-" + runId + "-" + emails.incrementAndGet() + "@example.com";
+    }
+
+    /**
+     * A 404 is a valid answer: another request of the run may have deleted the user.
+     */
+    private static boolean ok(HttpStatusCode status) {
+        return status.is2xxSuccessful() || status.value() == HttpStatus.NOT_FOUND.value();
+    }
+
+    private Mono<Double> metric(String name, String statistic) {
+        return metric(name, null, statistic);
+    }
+
+    private Mono<Double> metric(String name, String tag, String statistic) {
+        return client.get().uri(uri -> {
+                    uri.path("/actuator/metrics/{name}");
+                    if (tag != null) uri.queryParam("tag", tag);
+                    return uri.build(name);
+                })
+                .retrieve()
+                .bodyToMono(JsonNode.class)
+                .flatMapIterable(body -> body.path("measurements"))
+                .filter(measurement -> statistic.equals(measurement.path("statistic").asText()))
+                .next()
+                .map(measurement -> measurement.path("value").asDouble())
+                .onErrorResume(e -> Mono.empty());
+    }
+
+    private Map<String, Double> serverGc() {
+        Map<String, Double> gc = new LinkedHashMap<>();
+        gc.put("count", metric("jvm.gc.pause", "COUNT").blockOptional().orElse(0.0));
+        gc.put("totalSeconds", metric("jvm.gc.pause", "TOTAL_TIME").blockOptional().orElse(0.0));
+        return gc;
+    }
+
+    private static Map<String, Long> harnessGc() {
+        Map<String, Long> gc = new LinkedHashMap<>();
+        gc.put("count", ManagementFactory.getGarbageCollectorMXBeans().stream().mapToLong(GarbageCollectorMXBean::getCollectionCount).sum());
+        gc.put("millis", ManagementFactory.getGarbageCollectorMXBeans().stream().mapToLong(GarbageCollectorMXBean::getCollectionTime).sum());
+        return gc;
+    }
+
+    private void report(double seconds, Map<String, Double> serverGcBefore, Map<String, Double> serverGcAfter,
+                        Map<String, Long> harnessGcBefore, Map<String, Long> harnessGcAfter) throws Exception {
+        Map<String, Object> operations = new LinkedHashMap<>();
+        System.out.printf("%n%-8s %9s %7s %7s %10s %10s %10s %10s %10s%n",
+                "op", "count", "errors", "dropped", "req/s", "p50 us", "p99 us", "p99.9 us", "max us");
+        stats.forEach((operation, operationStats) -> {
+            Map<String, Object> report = operationStats.report(seconds);
+            if ((long) report.get("count") == 0 && (long) report.get("dropped") == 0) return;
+            operations.put(operation.name().toLowerCase(), report);
+            System.out.printf("%-8s %9d %7d %7d %10.1f %10d %10d %10d %10d%n", operation.name().toLowerCase(),
+                    report.get("count"), report.get("errors"), report.get("dropped"), report.get("throughput"),
+                    report.get("p50"), report.get("p99"), report.get("p99.9"), report.get("max"));
+        });
+
+        Map<String, Object> serverGc = new LinkedHashMap<>();
+        serverGcAfter.forEach((key, value) -> serverGc.put(key, value - serverGcBefore.get(key)));
+        Map<String, Object> harnessGcDelta = new LinkedHashMap<>();
+        harnessGcAfter.forEach((key, value) -> harnessGcDelta.put(key, value - harnessGcBefore.get(key)));
+        System.out.printf("%nPool peaks: %s%nServer GC: %s%nHarness GC: %s%n", poolPeaks, serverGc, harnessGcDelta);
+
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("settings", settings);
+        result.put("seconds", seconds);
+        result.put("operations", operations);
+        result.put("poolPeaks", poolPeaks);
+        result.put("serverGc", serverGc);
+        result.put("harnessGc", harnessGcDelta);
+        File file = new File("target/load-result.json");
+        file.getParentFile().mkdirs();
+        new ObjectMapper().enable(SerializationFeature.INDENT_OUTPUT).findAndRegisterModules().writeValue(file, result);
+        System.out.printf("Report written to %s%n", file);
+    }
+}
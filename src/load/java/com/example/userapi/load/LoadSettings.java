@@ -0,0 +1,41 @@
+package com.example.userapi.load;
+
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Harness settings, read from system properties so that they can be passed with {@code -D} on
+ * the Maven command line.
+ *
+ * @param baseUrl     {@code load.url}, the running application
+ * @param rate        {@code load.rate}, requests per second started regardless of responses
+ * @param duration    {@code load.duration}, how long to keep starting requests
+ * @param warmup      {@code load.warmup}, leading part of the run left out of the histograms
+ * @param seedUsers   {@code load.seed-users}, users created before the run to read and update
+ * @param maxInFlight {@code load.max-in-flight}, requests beyond this are counted as dropped
+ * @param mix         {@code load.mix}, relative weights of the operations, e.g. {@code get=60,list=20}
+ */
+record LoadSettings(String baseUrl, double rate, Duration duration, Duration warmup, int seedUsers, int maxInFlight,
+                    Map<Operation, Integer> mix) {
+
+    static LoadSettings fromSystemProperties() {
+        return new LoadSettings(
+                System.getProperty("load.url", "http://localhost:8080"),
+                Double.parseDouble(System.getProperty("load.rate", "200")),
+                Duration.parse(System.getProperty("load.duration", "PT60S")),
+                Duration.parse(System.getProperty("load.warmup", "PT10S")),
+                Integer.parseInt(System.getProperty("load.seed-users", "1000")),
+                Integer.parseInt(System.getProperty("load.max-in-flight", "10000")),
+                parseMix(System.getProperty("load.mix", "get=60,list=20,create=10,update=8,delete=2")));
+    }
+
+    private static Map<Operation, Integer> parseMix(String mix) {
+        Map<Operation, Integer> weights = new LinkedHashMap<>();
+        for (String entry : mix.split(",")) {
+            String[] parts = entry.trim().split("=");
+            weights.put(Operation.valueOf(parts[0].trim().toUpperCase()), Integer.parseInt(parts[1].trim()));
+        }
+        return weights;
+    }
+}
@@ -0,0 +1,5 @@
+package com.example.userapi.load;
+
+enum Operation {
+    GET, LIST, CREATE, UPDATE, DELETE
+}
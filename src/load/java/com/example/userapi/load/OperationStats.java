@@ -0,0 +1,48 @@
+package com.example.userapi.load;
+
+import org.HdrHistogram.ConcurrentHistogram;
+import org.HdrHistogram.Histogram;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Latencies of one operation in microseconds. {@code corrected} is measured from the time the
+ * request was scheduled to start, so a stalled server or harness shows up as latency instead of
+ * as fewer samples (coordinated omission). {@code service} is measured from the time it was sent.
+ */
+class OperationStats {
+
+    private static final long MAX_LATENCY = TimeUnit.MINUTES.toMicros(1);
+
+    private final Histogram corrected = new ConcurrentHistogram(MAX_LATENCY, 3);
+    private final Histogram service = new ConcurrentHistogram(MAX_LATENCY, 3);
+    private final LongAdder errors = new LongAdder();
+    private final LongAdder dropped = new LongAdder();
+
+    void record(long scheduledNanos, long sentNanos, long doneNanos, boolean error) {
+        corrected.recordValue(Math.min(MAX_LATENCY, TimeUnit.NANOSECONDS.toMicros(doneNanos - scheduledNanos)));
+        service.recordValue(Math.min(MAX_LATENCY, TimeUnit.NANOSECONDS.toMicros(doneNanos - sentNanos)));
+        if (error) errors.increment();
+    }
+
+    void drop() {
+        dropped.increment();
+    }
+
+    Map<String, Object> report(double seconds) {
+        Map<String, Object> report = new LinkedHashMap<>();
+        report.put("count", corrected.getTotalCount());
+        report.put("errors", errors.sum());
+        report.put("dropped", dropped.sum());
+        report.put("throughput", corrected.getTotalCount() / seconds);
+        report.put("p50", corrected.getValueAtPercentile(50));
+        report.put("p99", corrected.getValueAtPercentile(99));
+        report.put("p99.9", corrected.getValueAtPercentile(99.9));
+        report.put("max", corrected.getMaxValue());
+        report.put("serviceP99", service.getValueAtPercentile(99));
+        return report;
+    }
+}
@@ -0,0 +1,166 @@
+package com.example.userapi.codec;
+
+import com.example.userapi.entity.User;
+import org.reactivestreams.Publisher;
+import org.springframework.core.ResolvableType;
+import org.springframework.core.codec.AbstractEncoder;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferFactory;
+import org.springframework.core.io.buffer.DataBufferUtils;
+import org.springframework.http.MediaType;
+import org.springframework.lang.NonNull;
+import org.springframework.lang.Nullable;
+import org.springframework.util.MimeType;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Writes {@link User} as JSON by hand, with the same fields and in the same order as Jackson.
+ * A stream of users is written {@value #CHUNK_SIZE} at a time into one buffer each, as a JSON
+ * array or one per line for {@code application/x-ndjson}, so the response starts before the last
+ * user is read and there is no reflection or intermediate copy on the way. Strings are written
+ * into the buffer as they are unless they need escaping.
+ */
+public class UserJsonEncoder extends AbstractEncoder<User> {
+
+    static final int CHUNK_SIZE = 64;
+
+    private static final int ESTIMATED_SIZE = 80;
+
+    private static final byte[] ID = "{\"id\":".getBytes(StandardCharsets.UTF_8);
+    private static final byte[] NAME = ",\"name\":".getBytes(StandardCharsets.UTF_8);
+    private static final byte[] EMAIL = ",\"email\":".getBytes(StandardCharsets.UTF_8);
+    private static final byte[] VERSION = ",\"version\":".getBytes(StandardCharsets.UTF_8);
+    private static final byte[] NULL = "null".getBytes(StandardCharsets.UTF_8);
+
+    public UserJsonEncoder() {
+        super(MediaType.APPLICATION_JSON, MediaType.APPLICATION_NDJSON);
+    }
+
+    @Override
+    public boolean canEncode(@NonNull ResolvableType elementType, @Nullable MimeType mimeType) {
+        return elementType.toClass() == User.class && super.canEncode(elementType, mimeType);
+    }
+
+    @Override
+    @NonNull
+    public Flux<DataBuffer> encode(@NonNull Publisher<? extends User> inputStream, @NonNull DataBufferFactory bufferFactory,
+                                   @NonNull ResolvableType elementType, @Nullable MimeType mimeType,
+                                   @Nullable Map<String, Object> hints) {
+        if (inputStream instanceof Mono<? extends User> mono) {
+            return mono.map(user -> encodeValue(user, bufferFactory, elementType, mimeType, hints)).flux();
+        }
+        boolean lines = MediaType.APPLICATION_NDJSON.isCompatibleWith(mimeType);
+        return Flux.defer(() -> {
+            AtomicBoolean started = new AtomicBoolean();
+            Flux<DataBuffer> chunks = Flux.from(inputStream)
+                    .buffer(CHUNK_SIZE)
+                    .map(users -> lines ? writeLines(bufferFactory, users) : writeElements(bufferFactory, users, started.getAndSet(true)));
+            if (lines) return chunks;
+            return chunks.concatWith(Mono.fromSupplier(() -> bufferFactory.wrap((started.get() ? "]" : "[]").getBytes(StandardCharsets.UTF_8))));
+        });
+    }
+
+    @Override
+    @NonNull
+    public DataBuffer encodeValue(@NonNull User user, @NonNull DataBufferFactory bufferFactory, @NonNull ResolvableType valueType,
+                                  @Nullable MimeType mimeType, @Nullable Map<String, Object> hints) {
+        DataBuffer buffer = bufferFactory.allocateBuffer(ESTIMATED_SIZE);
+        try {
+            write(buffer, user);
+            return buffer;
+        } catch (RuntimeException e) {
+            DataBufferUtils.release(buffer);
+            throw e;
+        }
+    }
+
+    private static DataBuffer writeElements(DataBufferFactory bufferFactory, List<? extends User> users, boolean continued) {
+        DataBuffer buffer = bufferFactory.allocateBuffer(users.size() * (ESTIMATED_SIZE + 1) + 1);
+        try {
+            buffer.write((byte) (continued ? ',' : '['));
+            for (int i = 0; i < users.size(); i++) {
+                if (i > 0) buffer.write((byte) ',');
+                write(buffer, users.get(i));
+            }
+            return buffer;
+        } catch (RuntimeException e) {
+            DataBufferUtils.release(buffer);
+            throw e;
+        }
+    }
+
+    private static DataBuffer writeLines(DataBufferFactory bufferFactory, List<? extends User> users) {
+        DataBuffer buffer = bufferFactory.allocateBuffer(users.size() * (ESTIMATED_SIZE + 1));
+        try {
+            for (User user : users) {
+                write(buffer, user);
+                buffer.write((byte) '\n');
+            }
+            return buffer;
+        } catch (RuntimeException e) {
+            DataBufferUtils.release(buffer);
+            throw e;
+        }
+    }
+
+    private static void write(DataBuffer buffer, User user) {
+        buffer.write(ID);
+        if (user.getId() == null) buffer.write(NULL);
+        else buffer.write(Long.toString(user.getId()), StandardCharsets.UTF_8);
+        buffer.write(NAME);
+        writeString(buffer, user.getName());
+        buffer.write(EMAIL);
+        writeString(buffer, user.getEmail());
+        if (user.getVersion() != null) {
+            buffer.write(VERSION);
+            buffer.write(Long.toString(user.getVersion()), StandardCharsets.UTF_8);
+        }
+        buffer.write((byte) '}');
+    }
+
+    private static void writeString(DataBuffer buffer, String value) {
+        if (value == null) {
+            buffer.write(NULL);
+            return;
+        }
+        buffer.write((byte) '"');
+        buffer.write(needsEscaping(value) ? escape(value) : value, StandardCharsets.UTF_8);
+        buffer.write((byte) '"');
+    }
+
+    private static boolean needsEscaping(String value) {
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c < 0x20 || c == '"' || c == '\\' || Character.isSurrogate(c)) return true;
+        }
+        return false;
+    }
+
+    private static String escape(String value) {
+        StringBuilder escaped = new StringBuilder(value.length() + 8);
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            switch (c) {
+                case '"' -> escaped.append("\\\"");
+                case '\\' -> escaped.append("\\\\");
+                case '\n' -> escaped.append("\\n");
+                case '\r' -> escaped.append("\\r");
+                case '\t' -> escaped.append("\\t");
+                case '\b' -> escaped.append("\\b");
+                case '\f' -> escaped.append("\\f");
+                default -> {
+                    // Jackson writes characters outside the BMP as their escaped surrogate pair
+                    if (c < 0x20 || Character.isSurrogate(c)) escaped.append(String.format("\\u%04X", (int) c));
+                    else escaped.append(c);
+                }
+            }
+        }
+        return escaped.toString();
+    }
+}
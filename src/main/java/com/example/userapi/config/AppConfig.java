@@ -1,18 +1,118 @@
 package com.example.userapi.config;
 
+import com.example.userapi.metrics.SqlStatementLog;
+import com.example.userapi.repository.ReadYourWrites;
+import com.example.userapi.repository.ReplicaRouter;
+import com.example.userapi.repository.Shards;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.vertx.pgclient.PgConnectOptions;
+import io.vertx.sqlclient.Pool;
+import jakarta.persistence.EntityManagerFactory;
+import org.flywaydb.core.Flyway;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
 import org.hibernate.reactive.mutiny.Mutiny;
+import org.hibernate.reactive.pool.ReactiveConnectionPool;
+import org.hibernate.service.spi.ServiceRegistryImplementor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.cache.CacheManagerCustomizer;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.cache.annotation.EnableCaching;
+import org.springframework.cache.caffeine.CaffeineCacheManager;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.context.annotation.Profile;
+import org.springframework.scheduling.annotation.EnableScheduling;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.IntStream;
 
 import static jakarta.persistence.Persistence.createEntityManagerFactory;
 
 @Configuration
+@EnableCaching
+@EnableScheduling
+@EnableConfigurationProperties({BloomFilterProperties.class, BatchingProperties.class, CreateBatchingProperties.class,
+        PgPoolProperties.class, ReplicaProperties.class, ServerTimingProperties.class, ShardingProperties.class,
+        SqlLogProperties.class})
 public class AppConfig {
 
     @Bean
-    @Profile("default")
-    Mutiny.SessionFactory getMutinySessionFactory(){
-        return createEntityManagerFactory("dbSettings").unwrap(Mutiny.SessionFactory.class);
+    CacheManagerCustomizer<CaffeineCacheManager> asyncCacheModeCustomizer() {
+        return cacheManager -> {
+            cacheManager.setAsyncCacheMode(true);
+            cacheManager.setAllowNullValues(false);
+        };
+    }
+
+    @Bean
+    @Profile("!test & !pgclient")
+    Mutiny.SessionFactory getMutinySessionFactory(PgPoolProperties poolProperties, MeterRegistry meterRegistry,
+                                                  SqlStatementLog statementLog){
+        return sessionFactory(createEntityManagerFactory("dbSettings", poolProperties.toSettings()), "primary",
+                meterRegistry, statementLog);
+    }
+
+    @Bean(destroyMethod = "close")
+    @Profile("pgclient & !test")
+    Pool getPgPool(@Value("${users.db.pgclient.uri}") String uri, PgPoolProperties poolProperties) {
+        return Pool.pool(poolProperties.applyTo(PgConnectOptions.fromUri(uri)), poolProperties.toPoolOptions());
+    }
+
+    @Bean
+    @Profile("!pgclient")
+    ReplicaRouter getReplicaRouter(Mutiny.SessionFactory primary, ReplicaProperties replicaProperties,
+                                   PgPoolProperties poolProperties, ReadYourWrites readYourWrites,
+                                   MeterRegistry meterRegistry, SqlStatementLog statementLog) {
+        List<Mutiny.SessionFactory> replicas = sessionFactories("replica", replicaProperties.getUrls(),
+                replicaProperties.getUser(), replicaProperties.getPassword(), poolProperties, meterRegistry, statementLog);
+        return new ReplicaRouter(primary, replicas, replicaProperties, readYourWrites, meterRegistry);
+    }
+
+    /**
+     * Migrates every shard database before it is used. The Flyway auto-configuration only migrates
+     * the application's own datasource, the coordinator.
+     */
+    @Bean
+    @Profile("sharded")
+    Shards getShards(Mutiny.SessionFactory coordinator, ShardingProperties shardingProperties, PgPoolProperties poolProperties,
+                     MeterRegistry meterRegistry, SqlStatementLog statementLog) {
+        shardingProperties.getUrls().forEach(url -> Flyway.configure()
+                .dataSource(url, shardingProperties.getUser(), shardingProperties.getPassword())
+                .load()
+                .migrate());
+        return new Shards(coordinator, sessionFactories("shard", shardingProperties.getUrls(),
+                shardingProperties.getUser(), shardingProperties.getPassword(), poolProperties, meterRegistry, statementLog));
+    }
+
+    /**
+     * Session factories of the replicas or shards, with pools tagged {@code <kind>-<index>}.
+     */
+    private static List<Mutiny.SessionFactory> sessionFactories(String kind, List<String> urls, String user, String password,
+                                                                PgPoolProperties poolProperties, MeterRegistry meterRegistry,
+                                                                SqlStatementLog statementLog) {
+        return IntStream.range(0, urls.size())
+                .mapToObj(i -> {
+                    Map<String, Object> settings = new HashMap<>(poolProperties.toSettings());
+                    settings.put("jakarta.persistence.jdbc.url", urls.get(i));
+                    if (user != null) settings.put("jakarta.persistence.jdbc.user", user);
+                    if (password != null) settings.put("jakarta.persistence.jdbc.password", password);
+                    return sessionFactory(createEntityManagerFactory("dbSettings", settings), kind + "-" + i,
+                            meterRegistry, statementLog);
+                })
+                .toList();
+    }
+
+    public static Mutiny.SessionFactory sessionFactory(EntityManagerFactory entityManagerFactory, String pool,
+                                                       MeterRegistry meterRegistry, SqlStatementLog statementLog) {
+        ServiceRegistryImplementor serviceRegistry = entityManagerFactory.unwrap(SessionFactoryImplementor.class)
+                .getServiceRegistry();
+        ReactiveConnectionPool connectionPool = serviceRegistry.getService(ReactiveConnectionPool.class);
+        if (connectionPool instanceof InstrumentedSqlClientPool instrumentedPool) {
+            instrumentedPool.bindTo(meterRegistry, pool);
+            instrumentedPool.logTo(statementLog);
+        }
+        return entityManagerFactory.unwrap(Mutiny.SessionFactory.class);
     }
 }
@@ -0,0 +1,21 @@
+package com.example.userapi.config;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+@Getter
+@Setter
+@ConfigurationProperties(prefix = "users.bloom-filter")
+public class BloomFilterProperties {
+
+    private boolean enabled = false;
+
+    private long expectedInsertions = 1_000_000;
+
+    private double falsePositiveProbability = 0.01;
+
+    private Duration rebuildInterval = Duration.ofHours(1);
+}
@@ -0,0 +1,19 @@
+package com.example.userapi.config;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+@Getter
+@Setter
+@ConfigurationProperties(prefix = "users.create-batching")
+public class CreateBatchingProperties {
+
+    private boolean enabled = false;
+
+    private Duration window = Duration.ofMillis(5);
+
+    private int maxBatchSize = 100;
+}
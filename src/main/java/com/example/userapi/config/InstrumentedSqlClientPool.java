@@ -0,0 +1,192 @@
+package com.example.userapi.config;
+
+import com.example.userapi.metrics.RequestTimings;
+import com.example.userapi.metrics.SqlStatementLog;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.hibernate.cfg.AvailableSettings;
+import org.hibernate.engine.jdbc.spi.SqlExceptionHelper;
+import org.hibernate.reactive.pool.ReactiveConnection;
+import org.hibernate.reactive.pool.impl.DefaultSqlClientPool;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * {@link DefaultSqlClientPool} that counts callers waiting for a connection, connections handed
+ * out and statements sent but not yet answered, which is how far the pool is saturated and how
+ * deep pipelining goes. Hibernate creates the pool, so the session factory binds it to the
+ * registry once it is built, with a {@code pool} tag that tells the primary, replica and shard
+ * pools apart. Every statement with its text, bind count, duration and rows goes to
+ * the {@link SqlStatementLog}.
+ * <p>
+ * Hibernate Reactive takes the connection, and begins a transaction on it, before the session work
+ * runs and makes {@link RequestTimings} current with {@link RequestTimings#bind}. So the wait for
+ * the connection and the begin are held back until a statement finds the request, and from then
+ * on everything on the connection is recorded as its phases.
+ */
+public class InstrumentedSqlClientPool extends DefaultSqlClientPool implements MeterBinder {
+
+    private final AtomicInteger pending = new AtomicInteger();
+    private final AtomicInteger inUse = new AtomicInteger();
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private int maxSize;
+    private volatile SqlStatementLog statementLog;
+
+    @Override
+    public void configure(Map configuration) {
+        super.configure(configuration);
+        Object poolSize = configuration.get(AvailableSettings.POOL_SIZE);
+        maxSize = poolSize == null ? 0 : Integer.parseInt(poolSize.toString());
+    }
+
+    @Override
+    public CompletionStage<ReactiveConnection> getConnection() {
+        return acquire(super.getConnection());
+    }
+
+    @Override
+    public CompletionStage<ReactiveConnection> getConnection(SqlExceptionHelper sqlExceptionHelper) {
+        return acquire(super.getConnection(sqlExceptionHelper));
+    }
+
+    @Override
+    public CompletionStage<ReactiveConnection> getConnection(String tenantId) {
+        return acquire(super.getConnection(tenantId));
+    }
+
+    @Override
+    public CompletionStage<ReactiveConnection> getConnection(String tenantId, SqlExceptionHelper sqlExceptionHelper) {
+        return acquire(super.getConnection(tenantId, sqlExceptionHelper));
+    }
+
+    public void logTo(SqlStatementLog statementLog) {
+        this.statementLog = statementLog;
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        bindTo(registry, "primary");
+    }
+
+    public void bindTo(MeterRegistry registry, String pool) {
+        Tags tags = Tags.of("pool", pool);
+        Gauge.builder("users.db.pool.max", this, p -> p.maxSize).tags(tags).register(registry);
+        Gauge.builder("users.db.pool.size", this, p -> p.getPool() == null ? 0 : p.getPool().size()).tags(tags).register(registry);
+        Gauge.builder("users.db.pool.in.use", inUse, AtomicInteger::get).tags(tags).register(registry);
+        Gauge.builder("users.db.pool.pending", pending, AtomicInteger::get).tags(tags).register(registry);
+        Gauge.builder("users.db.pool.usage", this, p -> p.maxSize == 0 ? 0 : (double) p.inUse.get() / p.maxSize).tags(tags).register(registry);
+        Gauge.builder("users.db.pool.statements.in.flight", inFlight, AtomicInteger::get).tags(tags).register(registry);
+    }
+
+    private CompletionStage<ReactiveConnection> acquire(CompletionStage<ReactiveConnection> connection) {
+        pending.incrementAndGet();
+        long start = System.nanoTime();
+        return connection.whenComplete((c, e) -> pending.decrementAndGet())
+                .thenApply(c -> {
+                    inUse.incrementAndGet();
+                    Phases phases = new Phases();
+                    phases.record("queue", System.nanoTime() - start);
+                    return instrument(c, phases);
+                });
+    }
+
+    private ReactiveConnection instrument(ReactiveConnection connection, Phases phases) {
+        return (ReactiveConnection) Proxy.newProxyInstance(ReactiveConnection.class.getClassLoader(),
+                new Class<?>[]{ReactiveConnection.class}, new Statements(connection, phases));
+    }
+
+    /**
+     * Phases of one connection, kept until a statement on it finds the {@link RequestTimings} of
+     * the request using it.
+     */
+    private static class Phases {
+
+        private final List<Object[]> held = new ArrayList<>(2);
+        private RequestTimings timings;
+
+        synchronized void find() {
+            if (timings != null) return;
+            timings = RequestTimings.current();
+            if (timings == null) return;
+            for (Object[] phase : held) timings.record((String) phase[0], null, (long) phase[1]);
+            held.clear();
+        }
+
+        synchronized void record(String name, long nanos) {
+            if (timings != null) timings.record(name, null, nanos);
+            else held.add(new Object[]{name, nanos});
+        }
+    }
+
+    private class Statements implements InvocationHandler {
+
+        private final ReactiveConnection connection;
+        private final Phases phases;
+
+        Statements(ReactiveConnection connection, Phases phases) {
+            this.connection = connection;
+            this.phases = phases;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            Object result;
+            try {
+                result = method.invoke(connection, args);
+            } catch (InvocationTargetException e) {
+                throw e.getCause();
+            }
+            if (result instanceof ReactiveConnection batching) {
+                return batching == connection ? proxy : instrument(batching, phases);
+            }
+            if (!(result instanceof CompletionStage<?> stage)) return result;
+            if (method.getName().equals("close")) {
+                return stage.whenComplete((r, e) -> inUse.decrementAndGet());
+            }
+            phases.find();
+            SqlStatementLog log = args != null && args.length > 0 && args[0] instanceof String ? statementLog : null;
+            long start = System.nanoTime();
+            inFlight.incrementAndGet();
+            return stage.whenComplete((r, e) -> {
+                inFlight.decrementAndGet();
+                long nanos = System.nanoTime() - start;
+                phases.record(phase(method), nanos);
+                if (log != null) log.record((String) args[0], binds(args), nanos, rows(r), e);
+            });
+        }
+
+        private static int binds(Object[] args) {
+            if (args.length < 2) return 0;
+            if (args[1] instanceof Object[] parameters) return parameters.length;
+            if (args[1] instanceof List<?> batch) return batch.stream().mapToInt(parameters -> ((Object[]) parameters).length).sum();
+            return 0;
+        }
+
+        private static long rows(Object result) {
+            if (result instanceof ReactiveConnection.Result rows) return rows.size();
+            if (result instanceof Integer count) return count;
+            if (result instanceof int[] counts) return Arrays.stream(counts).sum();
+            return -1;
+        }
+
+        private static String phase(Method method) {
+            return switch (method.getName()) {
+                case "beginTransaction" -> "begin";
+                case "commitTransaction" -> "commit";
+                case "rollbackTransaction" -> "rollback";
+                default -> "sql";
+            };
+        }
+    }
+}
@@ -0,0 +1,40 @@
+package com.example.userapi.config;
+
+import io.vertx.pgclient.PgConnectOptions;
+import io.vertx.sqlclient.SqlConnectOptions;
+import org.hibernate.reactive.pool.impl.DefaultSqlClientPoolConfiguration;
+import org.hibernate.reactive.provider.Settings;
+
+import java.net.URI;
+import java.util.Map;
+
+/**
+ * Adds what {@link DefaultSqlClientPoolConfiguration} leaves at the Vert.x defaults: the number of
+ * statements pipelined on one PG connection and turning the prepared-statement cache on.
+ */
+public class PgPoolConfiguration extends DefaultSqlClientPoolConfiguration {
+
+    public static final String PIPELINING_LIMIT = "users.vertx.pg.pipelining_limit";
+
+    private Integer pipeliningLimit;
+    private boolean cachePreparedStatements;
+
+    @Override
+    public void configure(Map configuration) {
+        super.configure(configuration);
+        Object limit = configuration.get(PIPELINING_LIMIT);
+        pipeliningLimit = limit == null ? null : Integer.valueOf(limit.toString());
+        Object cacheMaxSize = configuration.get(Settings.PREPARED_STATEMENT_CACHE_MAX_SIZE);
+        cachePreparedStatements = cacheMaxSize != null && Integer.parseInt(cacheMaxSize.toString()) > 0;
+    }
+
+    @Override
+    public SqlConnectOptions connectOptions(URI uri) {
+        SqlConnectOptions options = super.connectOptions(uri);
+        options.setCachePreparedStatements(cachePreparedStatements);
+        if (pipeliningLimit != null && options instanceof PgConnectOptions pgOptions) {
+            pgOptions.setPipeliningLimit(pipeliningLimit);
+        }
+        return options;
+    }
+}
@@ -0,0 +1,70 @@
+package com.example.userapi.config;
+
+import io.vertx.pgclient.PgConnectOptions;
+import io.vertx.sqlclient.PoolOptions;
+import lombok.Getter;
+import lombok.Setter;
+import org.hibernate.cfg.AvailableSettings;
+import org.hibernate.reactive.provider.Settings;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Settings of the Vert.x PG pool, translated into Hibernate Reactive settings by
+ * {@link #toSettings()} so that they override {@code persistence.xml}, or applied directly to the
+ * pool of the {@code pgclient} repository.
+ */
+@Getter
+@Setter
+@ConfigurationProperties(prefix = "users.db.pool")
+public class PgPoolProperties {
+
+    private int maxSize = 2 * Runtime.getRuntime().availableProcessors();
+
+    private int maxWaitQueueSize = -1;
+
+    private int pipeliningLimit = 256;
+
+    private int preparedStatementCacheMaxSize = 256;
+
+    private int preparedStatementCacheSqlLimit = 2048;
+
+    private Duration connectTimeout = Duration.ofSeconds(30);
+
+    private Duration idleTimeout = Duration.ZERO;
+
+    public Map<String, Object> toSettings() {
+        Map<String, Object> settings = new HashMap<>();
+        settings.put(Settings.SQL_CLIENT_POOL, InstrumentedSqlClientPool.class.getName());
+        settings.put(Settings.SQL_CLIENT_POOL_CONFIG, PgPoolConfiguration.class.getName());
+        settings.put(AvailableSettings.POOL_SIZE, String.valueOf(maxSize));
+        settings.put(Settings.POOL_MAX_WAIT_QUEUE_SIZE, String.valueOf(maxWaitQueueSize));
+        settings.put(Settings.POOL_CONNECT_TIMEOUT, String.valueOf(connectTimeout.toMillis()));
+        settings.put(Settings.POOL_IDLE_TIMEOUT, String.valueOf(idleTimeout.toMillis()));
+        settings.put(Settings.PREPARED_STATEMENT_CACHE_MAX_SIZE, String.valueOf(preparedStatementCacheMaxSize));
+        settings.put(Settings.PREPARED_STATEMENT_CACHE_SQL_LIMIT, String.valueOf(preparedStatementCacheSqlLimit));
+        settings.put(PgPoolConfiguration.PIPELINING_LIMIT, String.valueOf(pipeliningLimit));
+        return settings;
+    }
+
+    public PoolOptions toPoolOptions() {
+        return new PoolOptions()
+                .setMaxSize(maxSize)
+                .setMaxWaitQueueSize(maxWaitQueueSize)
+                .setConnectionTimeout((int) connectTimeout.toMillis())
+                .setConnectionTimeoutUnit(TimeUnit.MILLISECONDS)
+                .setIdleTimeout((int) idleTimeout.toMillis())
+                .setIdleTimeoutUnit(TimeUnit.MILLISECONDS);
+    }
+
+    public PgConnectOptions applyTo(PgConnectOptions options) {
+        return options.setPipeliningLimit(pipeliningLimit)
+                .setCachePreparedStatements(preparedStatementCacheMaxSize > 0)
+                .setPreparedStatementCacheMaxSize(preparedStatementCacheMaxSize)
+                .setPreparedStatementCacheSqlLimit(preparedStatementCacheSqlLimit);
+    }
+}
@@ -0,0 +1,27 @@
+package com.example.userapi.config;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+@Getter
+@Setter
+@ConfigurationProperties(prefix = "users.db.replicas")
+public class ReplicaProperties {
+
+    private List<String> urls = new ArrayList<>();
+
+    private String user;
+
+    private String password;
+
+    private Duration maxLag = Duration.ofSeconds(5);
+
+    private Duration lagCheckInterval = Duration.ofSeconds(1);
+
+    private Duration pinDuration = Duration.ofSeconds(5);
+}
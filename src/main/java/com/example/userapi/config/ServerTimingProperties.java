@@ -0,0 +1,19 @@
+package com.example.userapi.config;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+@Getter
+@Setter
+@ConfigurationProperties(prefix = "users.server-timing")
+public class ServerTimingProperties {
+
+    private boolean enabled = false;
+
+    private Duration slowThreshold = Duration.ofMillis(500);
+
+    private double slowLogSampleRate = 0.1;
+}
@@ -0,0 +1,20 @@
+package com.example.userapi.config;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.util.ArrayList;
+import java.util.List;
+
+@Getter
+@Setter
+@ConfigurationProperties(prefix = "users.sharding")
+public class ShardingProperties {
+
+    private List<String> urls = new ArrayList<>();
+
+    private String user;
+
+    private String password;
+}
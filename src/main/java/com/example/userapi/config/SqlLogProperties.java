@@ -0,0 +1,21 @@
+package com.example.userapi.config;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+@Getter
+@Setter
+@ConfigurationProperties(prefix = "users.sql-log")
+public class SqlLogProperties {
+
+    private Duration slowThreshold = Duration.ofMillis(100);
+
+    private double sampleRate = 0.0;
+
+    private int slowQueriesSize = 256;
+
+    private int queueCapacity = 1024;
+}
@@ -0,0 +1,18 @@
+package com.example.userapi.config;
+
+import com.example.userapi.codec.UserJsonEncoder;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.http.codec.ServerCodecConfigurer;
+import org.springframework.web.reactive.config.WebFluxConfigurer;
+
+/**
+ * Registers {@link UserJsonEncoder} ahead of Jackson for {@code User} responses.
+ */
+@Configuration
+public class WebConfig implements WebFluxConfigurer {
+
+    @Override
+    public void configureHttpMessageCodecs(ServerCodecConfigurer configurer) {
+        configurer.customCodecs().register(new UserJsonEncoder());
+    }
+}
@@ -1,8 +1,12 @@
 package com.example.userapi.controller;
 
+import com.example.userapi.dto.BulkOperationDTO;
+import com.example.userapi.dto.BulkResultDTO;
 import com.example.userapi.dto.UserRequestDTO;
 import com.example.userapi.entity.User;
 import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.Parameter;
+import io.swagger.v3.oas.annotations.headers.Header;
 import io.swagger.v3.oas.annotations.media.Content;
 import io.swagger.v3.oas.annotations.media.ExampleObject;
 import io.swagger.v3.oas.annotations.responses.ApiResponse;
@@ -11,7 +15,10 @@ import org.springframework.http.ResponseEntity;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
-@Tag(name = "User controller", description = "Выполняет CRUD операции с пользователями")
+import java.util.List;
+
+@Tag(name = "User controller", description = "Выполняет CRUD операции с пользователями. Чтобы при чтении " +
+        "с реплик сразу видеть свои изменения, передавайте в каждом запросе заголовок X-Client-Id")
 public interface UserController {
 
     @Operation(
@@ -26,7 +33,8 @@ public interface UserController {
                                                             {
                                                                 "id": 1,
                                                                 "name": "Ivan",
-                                                                "email": "ivan@ya.ru"
+                                                                "email": "ivan@ya.ru",
+                                                                "version": 0
                                                             }
                                                             """
                                     )}
@@ -49,23 +57,30 @@ public interface UserController {
 
     @Operation(
             summary = "Получение пользователя по id",
+            description = "Ответ содержит ETag. Если он совпадает с переданным в If-None-Match, " +
+                    "возвращается 304 без тела",
             responses = {
                     @ApiResponse(
                             description = "Пользователь найден",
                             responseCode = "200",
+                            headers = @Header(name = "ETag", description = "Версия пользователя"),
                             content = @Content(
                                     mediaType = "application/json",
                                     examples = {@ExampleObject(value = """
                                                             {
                                                                 "id": 1,
                                                                 "name": "Ivan",
-                                                                "email": "ivan@ya.ru"
+                                                                "email": "ivan@ya.ru",
+                                                                "version": 0
                                                             }
                                                             """
                                             )
                                     }
 
                             )),
+                    @ApiResponse(
+                            description = "Пользователь не изменился",
+                            responseCode = "304"),
                     @ApiResponse(
                             description = "Пользователь не найден",
                             responseCode = "404",
@@ -91,17 +106,80 @@ public interface UserController {
 
     @Operation(
             summary = "Обновление информации о пользователе",
+            description = "Если передан If-Match с ETag пользователя или version в теле, пользователь " +
+                    "обновляется одним запросом, только пока его версия не изменилась",
             responses = {
                     @ApiResponse(
                             description = "Информация обновлена",
                             responseCode = "200",
+                            headers = @Header(name = "ETag", description = "Новая версия пользователя"),
                             content = @Content(
                                     mediaType = "application/json",
                                     examples = {@ExampleObject(value = """
                                                             {
                                                                 "id": 1,
                                                                 "name": "Ivan",
-                                                                "email": "ivan@gmail.com"
+                                                                "email": "ivan@gmail.com",
+                                                                "version": 1
+                                                            }
+                                                            """
+                                            )
+                                    }
+
+                            )),
+                    @ApiResponse(
+                            description = "Пользователь не найден",
+                            responseCode = "404",
+                            content = @Content(
+                                    mediaType = "application/json",
+                                    examples = {
+                                            @ExampleObject(
+                                                    value = """
+                                                            {
+                                                                "timestamp": "2024-02-20T09:41:17.941+00:00",
+                                                                "path": "/users/3",
+                                                                "status": 404,
+                                                                "error": "Not Found",
+                                                                "requestId": "606b3fc9-5"
+                                                            }
+                                                            """
+                                            )
+                                    }
+                            )),
+                    @ApiResponse(
+                            description = "Версия пользователя изменилась или If-Match неверный",
+                            responseCode = "412",
+                            content = @Content(
+                                    mediaType = "application/json",
+                                    examples = {@ExampleObject(value = """
+                                                            {
+                                                                "message": "Version mismatch"
+                                                            }
+                                                            """
+                                    )}
+                            ))
+            }
+    )
+    Mono<ResponseEntity<User>> update(User user,
+                                      @Parameter(description = "ETag пользователя из предыдущего ответа") String ifMatch);
+
+    @Operation(
+            summary = "Частичное обновление пользователя",
+            description = "Изменяет только переданные поля, остальные остаются прежними. Если передан " +
+                    "If-Match с ETag пользователя, пользователь обновляется, только пока его версия не изменилась",
+            responses = {
+                    @ApiResponse(
+                            description = "Информация обновлена",
+                            responseCode = "200",
+                            headers = @Header(name = "ETag", description = "Новая версия пользователя"),
+                            content = @Content(
+                                    mediaType = "application/json",
+                                    examples = {@ExampleObject(value = """
+                                                            {
+                                                                "id": 1,
+                                                                "name": "Petr",
+                                                                "email": "ivan@ya.ru",
+                                                                "version": 1
                                                             }
                                                             """
                                             )
@@ -126,10 +204,32 @@ public interface UserController {
                                                             """
                                             )
                                     }
+                            )),
+                    @ApiResponse(
+                            description = "Версия пользователя изменилась или If-Match неверный",
+                            responseCode = "412",
+                            content = @Content(
+                                    mediaType = "application/json",
+                                    examples = {@ExampleObject(value = """
+                                                            {
+                                                                "message": "Version mismatch"
+                                                            }
+                                                            """
+                                    )}
                             ))
             }
     )
-    Mono<ResponseEntity<User>> update(User user);
+    Mono<ResponseEntity<User>> patch(Long id,
+                                     @io.swagger.v3.oas.annotations.parameters.RequestBody(
+                                             content = @Content(
+                                                     mediaType = "application/json",
+                                                     examples = {@ExampleObject(value = """
+                                                             {
+                                                                 "name": "Petr"
+                                                             }
+                                                             """
+                                                     )})) UserRequestDTO userDto,
+                                     @Parameter(description = "ETag пользователя из предыдущего ответа") String ifMatch);
 
     @Operation(
             summary = "Удаление пользователя",
@@ -172,11 +272,20 @@ public interface UserController {
     )
     Mono<ResponseEntity<?>> delete(Long id);
 
+    String NEXT_CURSOR_HEADER = "X-Next-Cursor";
+
     @Operation(
-            summary = "Получение списка всех пользователей",
+            summary = "Получение страницы пользователей",
+            description = "Пользователи возвращаются по возрастанию id. Если есть следующая страница, " +
+                    "ее курсор передается в заголовке " + NEXT_CURSOR_HEADER + ". Ответ содержит ETag. " +
+                    "Если он совпадает с переданным в If-None-Match, возвращается 304 без тела",
             responses = {
                     @ApiResponse(
                             responseCode = "200",
+                            headers = {
+                                    @Header(name = NEXT_CURSOR_HEADER, description = "Курсор следующей страницы"),
+                                    @Header(name = "ETag", description = "Версия страницы")
+                            },
                             content = @Content(
                                     mediaType = "application/json",
                                     examples = {
@@ -197,8 +306,148 @@ public interface UserController {
                                                             """
                                             )
                                     }
+                            )),
+                    @ApiResponse(
+                            description = "Страница не изменилась",
+                            responseCode = "304"),
+                    @ApiResponse(
+                            description = "Неверный курсор или размер страницы",
+                            responseCode = "400",
+                            content = @Content(mediaType = "application/json"))
+            }
+    )
+    Mono<ResponseEntity<Flux<User>>> getAll(
+            @Parameter(description = "Курсор, полученный в заголовке " + NEXT_CURSOR_HEADER) String after,
+            @Parameter(description = "Размер страницы, от 1 до 1000") int limit);
+
+    @Operation(
+            summary = "Получение пользователей по списку id",
+            description = "Возвращает найденных пользователей в порядке запрошенных id, отсутствующие пропускаются",
+            responses = {
+                    @ApiResponse(
+                            responseCode = "200",
+                            content = @Content(
+                                    mediaType = "application/json",
+                                    examples = {
+                                            @ExampleObject(
+                                                    value = """
+                                                            [
+                                                            {
+                                                                "id": 2,
+                                                                "name": "Petr",
+                                                                "email": "petr@ya.ru"
+                                                            },
+                                                            {
+                                                                "id": 1,
+                                                                "name": "Ivan",
+                                                                "email": "ivan@ya.ru"
+                                                            }
+                                                            ]
+                                                            """
+                                            )
+                                    }
+                            )),
+                    @ApiResponse(
+                            description = "Запрошено больше 1000 id",
+                            responseCode = "400",
+                            content = @Content(mediaType = "application/json"))
+            }
+    )
+    Flux<User> getAllById(@Parameter(description = "Список id через запятую", example = "2,1") List<Long> ids);
+
+    @Operation(
+            summary = "Поиск пользователей по имени и email",
+            description = "Находит пользователей, у которых имя или email начинается с запроса или похоже на него, " +
+                    "в том числе с опечатками. Сначала идут совпадения по началу, затем по убыванию сходства",
+            responses = {
+                    @ApiResponse(
+                            responseCode = "200",
+                            content = @Content(
+                                    mediaType = "application/json",
+                                    examples = {
+                                            @ExampleObject(
+                                                    value = """
+                                                            [
+                                                            {
+                                                                "id": 1,
+                                                                "name": "Ivan",
+                                                                "email": "ivan@ya.ru",
+                                                                "version": 0
+                                                            },
+                                                            {
+                                                                "id": 3,
+                                                                "name": "Ivanna",
+                                                                "email": "ivanna@ya.ru",
+                                                                "version": 2
+                                                            }
+                                                            ]
+                                                            """
+                                            )
+                                    }
+                            )),
+                    @ApiResponse(
+                            description = "Пустой или слишком длинный запрос, неверное количество результатов",
+                            responseCode = "400",
+                            content = @Content(mediaType = "application/json"))
+            }
+    )
+    Flux<User> search(@Parameter(description = "Начало или часть имени или email, до 255 символов", example = "ivan") String q,
+                      @Parameter(description = "Максимальное количество результатов, от 1 до 100") int limit);
+
+    @Operation(
+            summary = "Выгрузка всех пользователей",
+            description = "Пользователи передаются потоком в формате NDJSON по мере чтения из базы",
+            responses = {
+                    @ApiResponse(
+                            responseCode = "200",
+                            content = @Content(
+                                    mediaType = "application/x-ndjson",
+                                    examples = {
+                                            @ExampleObject(
+                                                    value = """
+                                                            {"id":1,"name":"Ivan","email":"ivan@ya.ru"}
+                                                            {"id":2,"name":"Petr","email":"petr@ya.ru"}
+                                                            """
+                                            )
+                                    }
+                            ))
+            }
+    )
+    Flux<User> export();
+
+    @Operation(
+            summary = "Пакетное создание, обновление и удаление пользователей",
+            description = "Принимает операции в формате NDJSON и возвращает результат для каждой операции " +
+                    "в том же порядке. Ошибка одной операции не отменяет остальные. Операция над пользователем, " +
+                    "которого в это время изменил другой запрос, получает статус 409",
+            responses = {
+                    @ApiResponse(
+                            responseCode = "200",
+                            content = @Content(
+                                    mediaType = "application/x-ndjson",
+                                    examples = {
+                                            @ExampleObject(
+                                                    value = """
+                                                            {"index":0,"op":"create","status":200,"id":1}
+                                                            {"index":1,"op":"update","status":400,"id":2,"message":"Not unique email"}
+                                                            {"index":2,"op":"delete","status":404,"id":3,"message":"User not found"}
+                                                            """
+                                            )
+                                    }
                             ))
             }
     )
-    Flux<User> getAll();
+    Flux<BulkResultDTO> bulk(
+            @io.swagger.v3.oas.annotations.parameters.RequestBody(
+                    content = @Content(
+                            mediaType = "application/x-ndjson",
+                            examples = {
+                                    @ExampleObject(
+                                            value = """
+                                                    {"op":"create","name":"Ivan","email":"ivan@ya.ru"}
+                                                    {"op":"update","id":2,"name":"Petr","email":"ivan@ya.ru"}
+                                                    {"op":"delete","id":3}
+                                                    """
+                                    )
+                            })) Flux<BulkOperationDTO> operations);
 }
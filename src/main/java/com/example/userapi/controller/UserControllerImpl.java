@@ -1,22 +1,33 @@
 package com.example.userapi.controller;
 
+import com.example.userapi.dto.BulkOperationDTO;
+import com.example.userapi.dto.BulkResultDTO;
 import com.example.userapi.dto.MessageResponseDTO;
 import com.example.userapi.dto.UserRequestDTO;
 import com.example.userapi.entity.User;
 import com.example.userapi.service.UserService;
+import com.example.userapi.util.UserUtils;
 import lombok.AllArgsConstructor;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.server.ResponseStatusException;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
+import java.util.List;
+
 @RestController
 @AllArgsConstructor
 @RequestMapping("/users")
 public class UserControllerImpl implements UserController {
 
+    private static final int MAX_PAGE_SIZE = 1000;
+    private static final int MAX_SEARCH_RESULTS = 100;
+    private static final int MAX_QUERY_LENGTH = 255;
+
     private final UserService userService;
 
     @Override
@@ -24,7 +35,7 @@ public class UserControllerImpl implements UserController {
     public Mono<ResponseEntity<User>> create(@RequestBody UserRequestDTO userDto) {
         return userService.create(userDto)
                 .switchIfEmpty(Mono.error(new ResponseStatusException(HttpStatus.BAD_REQUEST, "Not unique email")))
-                .map(ResponseEntity::ok);
+                .map(UserControllerImpl::ok);
     }
 
     @Override
@@ -32,15 +43,27 @@ public class UserControllerImpl implements UserController {
     public Mono<ResponseEntity<User>> get(@PathVariable Long id) {
         return userService.get(id)
                 .switchIfEmpty(Mono.error(new ResponseStatusException(HttpStatus.NOT_FOUND, "User not found")))
-                .map(ResponseEntity::ok);
+                .map(UserControllerImpl::ok);
     }
 
     @Override
     @PutMapping()
-    public Mono<ResponseEntity<User>> update(@RequestBody User user) {
-        return userService.update(user)
+    public Mono<ResponseEntity<User>> update(@RequestBody User user,
+                                             @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch) {
+        return withVersion(user, ifMatch)
+                .flatMap(userService::update)
+                .switchIfEmpty(Mono.error(new ResponseStatusException(HttpStatus.NOT_FOUND, "User not found")))
+                .map(UserControllerImpl::ok);
+    }
+
+    @Override
+    @PatchMapping("/{id}")
+    public Mono<ResponseEntity<User>> patch(@PathVariable Long id, @RequestBody UserRequestDTO userDto,
+                                            @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch) {
+        return withVersion(new User(id, userDto.getName(), userDto.getEmail()), ifMatch)
+                .flatMap(userService::patch)
                 .switchIfEmpty(Mono.error(new ResponseStatusException(HttpStatus.NOT_FOUND, "User not found")))
-                .map(ResponseEntity::ok);
+                .map(UserControllerImpl::ok);
     }
 
     @Override
@@ -53,7 +76,74 @@ public class UserControllerImpl implements UserController {
 
     @Override
     @GetMapping()
-    public Flux<User> getAll() {
-        return userService.getAll();
+    public Mono<ResponseEntity<Flux<User>>> getAll(@RequestParam(required = false) String after,
+                                                   @RequestParam(defaultValue = "100") int limit) {
+        if (limit < 1 || limit > MAX_PAGE_SIZE)
+            return Mono.error(new ResponseStatusException(HttpStatus.BAD_REQUEST, "Limit must be between 1 and " + MAX_PAGE_SIZE));
+        Long afterId;
+        try {
+            afterId = UserUtils.decodeCursor(after);
+        } catch (IllegalArgumentException e) {
+            return Mono.error(new ResponseStatusException(HttpStatus.BAD_REQUEST, "Invalid cursor"));
+        }
+        return userService.getAll(afterId, limit + 1)
+                .collectList()
+                .map(users -> {
+                    if (users.size() <= limit) {
+                        return ResponseEntity.ok().eTag(UserUtils.eTag(users, false)).body(Flux.fromIterable(users));
+                    }
+                    List<User> page = users.subList(0, limit);
+                    return ResponseEntity.ok()
+                            .eTag(UserUtils.eTag(page, true))
+                            .header(NEXT_CURSOR_HEADER, UserUtils.encodeCursor(page.get(limit - 1).getId()))
+                            .body(Flux.fromIterable(page));
+                });
+    }
+
+    @Override
+    @GetMapping(params = "ids")
+    public Flux<User> getAllById(@RequestParam List<Long> ids) {
+        if (ids.size() > MAX_PAGE_SIZE)
+            return Flux.error(new ResponseStatusException(HttpStatus.BAD_REQUEST, "At most " + MAX_PAGE_SIZE + " ids are allowed"));
+        return userService.getAllById(ids);
+    }
+
+    @Override
+    @GetMapping("/search")
+    public Flux<User> search(@RequestParam String q, @RequestParam(defaultValue = "20") int limit) {
+        if (q.isBlank() || q.length() > MAX_QUERY_LENGTH)
+            return Flux.error(new ResponseStatusException(HttpStatus.BAD_REQUEST, "Query must be 1 to " + MAX_QUERY_LENGTH + " characters long"));
+        if (limit < 1 || limit > MAX_SEARCH_RESULTS)
+            return Flux.error(new ResponseStatusException(HttpStatus.BAD_REQUEST, "Limit must be between 1 and " + MAX_SEARCH_RESULTS));
+        return userService.search(q.strip(), limit);
+    }
+
+    @Override
+    @GetMapping(value = "/export", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public Flux<User> export() {
+        return userService.export();
+    }
+
+    @Override
+    @PostMapping(value = "/_bulk", consumes = MediaType.APPLICATION_NDJSON_VALUE, produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public Flux<BulkResultDTO> bulk(@RequestBody Flux<BulkOperationDTO> operations) {
+        return userService.bulk(operations);
+    }
+
+    private static Mono<User> withVersion(User user, String ifMatch) {
+        if (ifMatch != null) {
+            try {
+                user.setVersion(UserUtils.parseETag(ifMatch));
+            } catch (IllegalArgumentException e) {
+                return Mono.error(new ResponseStatusException(HttpStatus.PRECONDITION_FAILED, "Invalid If-Match"));
+            }
+        }
+        return Mono.just(user);
+    }
+
+    private static ResponseEntity<User> ok(User user) {
+        ResponseEntity.BodyBuilder response = ResponseEntity.ok();
+        if (user.getVersion() != null) response.eTag(UserUtils.eTag(user));
+        return response.body(user);
     }
 }
@@ -0,0 +1,35 @@
+package com.example.userapi.dto;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+import io.swagger.v3.oas.annotations.media.Schema;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+@Getter
+@Setter
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class BulkOperationDTO {
+
+    @Schema(example = "update")
+    private Operation op;
+
+    @Schema(example = "1")
+    private Long id;
+
+    @Schema(example = "Ivan")
+    private String name;
+
+    @Schema(example = "ivan@ya.ru")
+    private String email;
+
+    public enum Operation {
+        @JsonProperty("create") CREATE,
+        @JsonProperty("update") UPDATE,
+        @JsonProperty("delete") DELETE
+    }
+}
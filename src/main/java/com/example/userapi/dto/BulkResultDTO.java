@@ -0,0 +1,38 @@
+package com.example.userapi.dto;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import io.swagger.v3.oas.annotations.media.Schema;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+@Getter
+@Setter
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class BulkResultDTO {
+
+    public static final String NOT_FOUND = "User not found";
+    public static final String NOT_UNIQUE_EMAIL = "Not unique email";
+    public static final String INVALID_OPERATION = "Invalid operation";
+    public static final String CONCURRENT_MODIFICATION = "User was changed concurrently";
+
+    @Schema(example = "0")
+    private long index;
+
+    @Schema(example = "update")
+    private BulkOperationDTO.Operation op;
+
+    @Schema(example = "200")
+    private int status;
+
+    @Schema(example = "1")
+    private Long id;
+
+    @Schema(example = "Not unique email")
+    private String message;
+}
@@ -1,5 +1,6 @@
 package com.example.userapi.entity;
 
+import com.fasterxml.jackson.annotation.JsonInclude;
 import io.swagger.v3.oas.annotations.media.Schema;
 import jakarta.persistence.*;
 import lombok.*;
@@ -14,7 +15,6 @@ import java.util.Objects;
 @AllArgsConstructor
 @Entity
 @Table(name="users")
-@NamedQuery(name = "delete", query = "delete from User u where u.id=:id")
 public class User {
     @Schema(example = "1")
     @Id
@@ -25,12 +25,23 @@ public class User {
     private String name;
     @Schema(example = "ivan@ya.ru")
     private String email;
+    @Schema(example = "0", description = "Версия, растет при каждом изменении. Если передана при обновлении, " +
+            "пользователь обновляется, только пока его версия не изменилась")
+    @Version
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    private Long version;
 
     public User(String name, String email) {
         this.name = name;
         this.email = email;
     }
 
+    public User(Long id, String name, String email) {
+        this.id = id;
+        this.name = name;
+        this.email = email;
+    }
+
     @Override
     public boolean equals(Object o) {
         if (this == o) return true;
@@ -1,6 +1,7 @@
 package com.example.userapi.exception;
 
 import com.example.userapi.dto.MessageResponseDTO;
+import org.hibernate.StaleObjectStateException;
 import org.hibernate.exception.ConstraintViolationException;
 import org.springframework.dao.DuplicateKeyException;
 import org.springframework.http.HttpStatus;
@@ -16,4 +17,9 @@ public class ExceptionInfoHandler {
     public Mono<ResponseEntity<?>> userNotFound(ConstraintViolationException e) {
         return Mono.just(ResponseEntity.status(HttpStatus.BAD_REQUEST).body(new MessageResponseDTO("Not unique email")));
     }
+
+    @ExceptionHandler(StaleObjectStateException.class)
+    public Mono<ResponseEntity<?>> versionMismatch(StaleObjectStateException e) {
+        return Mono.just(ResponseEntity.status(HttpStatus.PRECONDITION_FAILED).body(new MessageResponseDTO("Version mismatch")));
+    }
 }
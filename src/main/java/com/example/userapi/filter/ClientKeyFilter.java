@@ -0,0 +1,29 @@
+package com.example.userapi.filter;
+
+import com.example.userapi.repository.ReadYourWrites;
+import org.springframework.lang.NonNull;
+import org.springframework.stereotype.Component;
+import org.springframework.web.server.ServerWebExchange;
+import org.springframework.web.server.WebFilter;
+import org.springframework.web.server.WebFilterChain;
+import reactor.core.publisher.Mono;
+
+/**
+ * Puts the caller's {@value #CLIENT_ID_HEADER} header into the Reactor context for
+ * {@link ReadYourWrites}. Clients that must read their own writes while replicas are in use have
+ * to send it: requests without it are never pinned to the primary. The remote address is not used
+ * instead, since every client behind the same proxy or NAT would share it.
+ */
+@Component
+public class ClientKeyFilter implements WebFilter {
+
+    public static final String CLIENT_ID_HEADER = "X-Client-Id";
+
+    @Override
+    @NonNull
+    public Mono<Void> filter(@NonNull ServerWebExchange exchange, @NonNull WebFilterChain chain) {
+        String client = exchange.getRequest().getHeaders().getFirst(CLIENT_ID_HEADER);
+        if (client == null) return chain.filter(exchange);
+        return chain.filter(exchange).contextWrite(context -> context.put(ReadYourWrites.CLIENT_KEY, client));
+    }
+}
@@ -0,0 +1,96 @@
+package com.example.userapi.filter;
+
+import com.example.userapi.config.ServerTimingProperties;
+import com.example.userapi.metrics.RequestTimings;
+import lombok.extern.slf4j.Slf4j;
+import org.reactivestreams.Publisher;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.http.HttpStatusCode;
+import org.springframework.http.server.reactive.ServerHttpRequest;
+import org.springframework.http.server.reactive.ServerHttpResponse;
+import org.springframework.http.server.reactive.ServerHttpResponseDecorator;
+import org.springframework.lang.NonNull;
+import org.springframework.stereotype.Component;
+import org.springframework.web.server.ServerWebExchange;
+import org.springframework.web.server.WebFilter;
+import org.springframework.web.server.WebFilterChain;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.Locale;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * With {@code users.server-timing.enabled} set, collects {@link RequestTimings} for every request
+ * and returns them in the {@value #SERVER_TIMING_HEADER} header: the wait for a connection, each
+ * statement with transaction begin and commit, every repository call, encoding of the body up to
+ * its first buffer and the total until the headers are sent. Requests slower than
+ * {@code users.server-timing.slow-threshold} are also logged, a sampled
+ * {@code users.server-timing.slow-log-sample-rate} of them.
+ */
+@Slf4j
+@Component
+@Order(Ordered.HIGHEST_PRECEDENCE)
+public class ServerTimingFilter implements WebFilter {
+
+    public static final String SERVER_TIMING_HEADER = "Server-Timing";
+
+    private final ServerTimingProperties properties;
+
+    public ServerTimingFilter(ServerTimingProperties properties) {
+        this.properties = properties;
+    }
+
+    @Override
+    @NonNull
+    public Mono<Void> filter(@NonNull ServerWebExchange exchange, @NonNull WebFilterChain chain) {
+        if (!properties.isEnabled()) return chain.filter(exchange);
+        RequestTimings timings = new RequestTimings();
+        ServerHttpResponse response = exchange.getResponse();
+        response.beforeCommit(() -> Mono.fromRunnable(() ->
+                response.getHeaders().add(SERVER_TIMING_HEADER, timings.toServerTiming())));
+        return chain.filter(exchange.mutate().response(new EncodeTiming(response, timings)).build())
+                .doFinally(signal -> logIfSlow(exchange, timings))
+                .contextWrite(context -> context.put(RequestTimings.KEY, timings));
+    }
+
+    private void logIfSlow(ServerWebExchange exchange, RequestTimings timings) {
+        long elapsed = timings.elapsedNanos();
+        if (elapsed < properties.getSlowThreshold().toNanos()) return;
+        if (ThreadLocalRandom.current().nextDouble() >= properties.getSlowLogSampleRate()) return;
+        ServerHttpRequest request = exchange.getRequest();
+        HttpStatusCode status = exchange.getResponse().getStatusCode();
+        log.warn("Slow request method={} path={} status={} durationMs={} phases=\"{}\"",
+                request.getMethod(), request.getPath().value(), status == null ? "-" : status.value(),
+                String.format(Locale.ROOT, "%.3f", elapsed / 1_000_000.0), timings.toLogValue());
+    }
+
+    /**
+     * Times the body from subscription to its first buffer, which for a single value is all of
+     * its encoding and for a stream also includes the wait for its first element.
+     */
+    private static class EncodeTiming extends ServerHttpResponseDecorator {
+
+        private final RequestTimings timings;
+
+        EncodeTiming(ServerHttpResponse delegate, RequestTimings timings) {
+            super(delegate);
+            this.timings = timings;
+        }
+
+        @Override
+        @NonNull
+        public Mono<Void> writeWith(@NonNull Publisher<? extends DataBuffer> body) {
+            return super.writeWith(Flux.defer(() -> {
+                long start = System.nanoTime();
+                AtomicBoolean first = new AtomicBoolean(true);
+                return Flux.from(body).doOnNext(buffer -> {
+                    if (first.compareAndSet(true, false)) timings.record("encode", null, System.nanoTime() - start);
+                });
+            }));
+        }
+    }
+}
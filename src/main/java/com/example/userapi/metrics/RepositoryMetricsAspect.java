@@ -0,0 +1,110 @@
+package com.example.userapi.metrics;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.aspectj.lang.ProceedingJoinPoint;
+import org.aspectj.lang.annotation.Around;
+import org.aspectj.lang.annotation.Aspect;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.SignalType;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Times every {@code UserRepository} call of a {@code @Repository} bean from subscription to
+ * termination as {@value #TIMER}, tagged with the method and the outcome: {@code success},
+ * {@code empty} for a {@link Mono} without a value, {@code error} or {@code cancelled}. Rows
+ * emitted by methods returning a {@link Flux} are counted as {@value #ROWS}. Calls made for a
+ * request with {@link RequestTimings} are added to them as {@code repository} phases.
+ */
+@Aspect
+@Component
+public class RepositoryMetricsAspect {
+
+    public static final String TIMER = "users.repository";
+    public static final String ROWS = "users.repository.rows";
+
+    private final MeterRegistry meterRegistry;
+    private final Map<String, Timer> timers = new ConcurrentHashMap<>();
+    private final Map<String, Counter> rows = new ConcurrentHashMap<>();
+
+    public RepositoryMetricsAspect(MeterRegistry meterRegistry) {
+        this.meterRegistry = meterRegistry;
+    }
+
+    @Around("execution(* com.example.userapi.repository.UserRepository.*(..)) && @within(org.springframework.stereotype.Repository)")
+    public Object time(ProceedingJoinPoint joinPoint) throws Throwable {
+        String method = joinPoint.getSignature().getName();
+        Object result;
+        try {
+            result = joinPoint.proceed();
+        } catch (Throwable e) {
+            timer(method, "error").record(0, TimeUnit.NANOSECONDS);
+            throw e;
+        }
+        if (result instanceof Mono<?> mono) return time(method, mono);
+        if (result instanceof Flux<?> flux) return time(method, flux);
+        return result;
+    }
+
+    private <T> Mono<T> time(String method, Mono<T> mono) {
+        return Mono.deferContextual(context -> {
+            long start = System.nanoTime();
+            RequestTimings timings = RequestTimings.from(context).orElse(null);
+            AtomicBoolean value = new AtomicBoolean();
+            AtomicBoolean error = new AtomicBoolean();
+            return mono.doOnNext(v -> value.set(true))
+                    .doOnError(e -> error.set(true))
+                    .doFinally(signal -> record(method, outcome(signal, error.get(), value.get()), start, timings));
+        });
+    }
+
+    private <T> Flux<T> time(String method, Flux<T> flux) {
+        return Flux.deferContextual(context -> {
+            long start = System.nanoTime();
+            RequestTimings timings = RequestTimings.from(context).orElse(null);
+            AtomicLong count = new AtomicLong();
+            AtomicBoolean error = new AtomicBoolean();
+            return flux.doOnNext(v -> count.incrementAndGet())
+                    .doOnError(e -> error.set(true))
+                    .doFinally(signal -> {
+                        record(method, outcome(signal, error.get(), true), start, timings);
+                        rows(method).increment(count.get());
+                    });
+        });
+    }
+
+    private void record(String method, String outcome, long start, RequestTimings timings) {
+        long nanos = System.nanoTime() - start;
+        timer(method, outcome).record(nanos, TimeUnit.NANOSECONDS);
+        if (timings != null) timings.record("repository", method, nanos);
+    }
+
+    private static String outcome(SignalType signal, boolean error, boolean value) {
+        if (signal == SignalType.CANCEL) return "cancelled";
+        if (error) return "error";
+        return value ? "success" : "empty";
+    }
+
+    private Timer timer(String method, String outcome) {
+        return timers.computeIfAbsent(method + ':' + outcome, key -> Timer.builder(TIMER)
+                .description("UserRepository calls from subscription to termination")
+                .tag("method", method)
+                .tag("outcome", outcome)
+                .register(meterRegistry));
+    }
+
+    private Counter rows(String method) {
+        return rows.computeIfAbsent(method, key -> Counter.builder(ROWS)
+                .description("Rows emitted by UserRepository calls")
+                .tag("method", method)
+                .register(meterRegistry));
+    }
+}
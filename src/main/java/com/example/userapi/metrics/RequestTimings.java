@@ -0,0 +1,110 @@
+package com.example.userapi.metrics;
+
+import io.smallrye.mutiny.Uni;
+import io.vertx.core.Context;
+import io.vertx.core.Vertx;
+import reactor.util.context.ContextView;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+import java.util.function.Function;
+
+/**
+ * Phases of a single request, collected while {@code users.server-timing.enabled} is set. The
+ * request travels in the Reactor context under {@link #KEY}. Session work wrapped with
+ * {@link #bind} also puts it into the local data of the Vert.x context Hibernate Reactive runs the
+ * session on, where the connection pool finds it through {@link #current()}.
+ */
+public final class RequestTimings {
+
+    public static final Object KEY = RequestTimings.class;
+
+    private final long start = System.nanoTime();
+    private final List<Phase> phases = new ArrayList<>();
+
+    public static Optional<RequestTimings> from(ContextView context) {
+        return context.getOrEmpty(KEY);
+    }
+
+    public static RequestTimings current() {
+        Context context = Vertx.currentContext();
+        return context == null ? null : context.getLocal(KEY);
+    }
+
+    /**
+     * Session work that first makes the timings in {@code context} current, or clears the ones a
+     * previous session on the same Vert.x context left behind. Hibernate Reactive runs the work on
+     * the context it subscribed on, or on a new duplicate of its own when there is none.
+     */
+    public static <S, T> Function<S, Uni<T>> bind(ContextView context, Function<S, Uni<T>> work) {
+        RequestTimings timings = from(context).orElse(null);
+        return session -> {
+            Context current = Vertx.currentContext();
+            if (current != null) {
+                if (timings == null) current.removeLocal(KEY);
+                else current.putLocal(KEY, timings);
+            }
+            return work.apply(session);
+        };
+    }
+
+    public void record(String name, String description, long nanos) {
+        synchronized (phases) {
+            phases.add(new Phase(name, description, nanos));
+        }
+    }
+
+    public long elapsedNanos() {
+        return System.nanoTime() - start;
+    }
+
+    /**
+     * Renders the phases recorded so far and the time since the request arrived as a
+     * {@code Server-Timing} header value. Repeated phases such as SQL statements are numbered.
+     */
+    public String toServerTiming() {
+        StringBuilder header = new StringBuilder();
+        for (Phase phase : numbered()) {
+            header.append(phase.name()).append(";dur=").append(millis(phase.nanos()));
+            if (phase.description() != null) header.append(";desc=\"").append(phase.description()).append('"');
+            header.append(", ");
+        }
+        return header.append("total;dur=").append(millis(elapsedNanos())).toString();
+    }
+
+    public String toLogValue() {
+        StringBuilder value = new StringBuilder();
+        for (Phase phase : numbered()) {
+            if (!value.isEmpty()) value.append(' ');
+            value.append(phase.name());
+            if (phase.description() != null) value.append('.').append(phase.description());
+            value.append('=').append(millis(phase.nanos()));
+        }
+        return value.toString();
+    }
+
+    private List<Phase> numbered() {
+        List<Phase> snapshot;
+        synchronized (phases) {
+            snapshot = List.copyOf(phases);
+        }
+        Map<String, Integer> counts = new HashMap<>();
+        List<Phase> numbered = new ArrayList<>(snapshot.size());
+        for (Phase phase : snapshot) {
+            int count = counts.merge(phase.name(), 1, Integer::sum);
+            numbered.add(count == 1 ? phase : new Phase(phase.name() + "-" + count, phase.description(), phase.nanos()));
+        }
+        return numbered;
+    }
+
+    private static String millis(long nanos) {
+        return String.format(Locale.ROOT, "%.3f", nanos / 1_000_000.0);
+    }
+
+    private record Phase(String name, String description, long nanos) {
+    }
+}
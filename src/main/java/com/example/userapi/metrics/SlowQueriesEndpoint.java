@@ -0,0 +1,27 @@
+package com.example.userapi.metrics;
+
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+
+/**
+ * {@code /actuator/slowqueries}: the slow statements kept by {@link SqlStatementLog}, newest
+ * first. It is read-only, since the web endpoints are exposed without authentication.
+ */
+@Component
+@Endpoint(id = "slowqueries")
+public class SlowQueriesEndpoint {
+
+    private final SqlStatementLog sqlStatementLog;
+
+    public SlowQueriesEndpoint(SqlStatementLog sqlStatementLog) {
+        this.sqlStatementLog = sqlStatementLog;
+    }
+
+    @ReadOperation
+    public List<SqlStatementLog.Entry> slowQueries() {
+        return sqlStatementLog.slowQueries();
+    }
+}
@@ -0,0 +1,105 @@
+package com.example.userapi.metrics;
+
+import com.example.userapi.config.SqlLogProperties;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Statements sent through the instrumented pool. Those slower than {@code users.sql-log.slow-threshold}
+ * are kept in a ring buffer of the last {@code users.sql-log.slow-queries-size} and logged, a
+ * {@code users.sql-log.sample-rate} of the others is only logged.
+ * <p>
+ * {@link #record} runs on the event loop, so it only stores the entry and hands the log line to a
+ * single background thread. When its queue of {@code users.sql-log.queue-capacity} lines is full
+ * further lines are dropped and counted as {@code users.sql.log.dropped}.
+ */
+@Slf4j
+@Component
+public class SqlStatementLog implements AutoCloseable {
+
+    private final SqlLogProperties properties;
+    private final long slowThresholdNanos;
+    private final AtomicReferenceArray<Entry> slowQueries;
+    private final AtomicLong sequence = new AtomicLong();
+    private final AtomicLong slowSlot = new AtomicLong();
+    private final ExecutorService writer;
+
+    public SqlStatementLog(SqlLogProperties properties, MeterRegistry meterRegistry) {
+        this.properties = properties;
+        this.slowThresholdNanos = properties.getSlowThreshold().toNanos();
+        this.slowQueries = new AtomicReferenceArray<>(properties.getSlowQueriesSize());
+        Counter dropped = Counter.builder("users.sql.log.dropped").register(meterRegistry);
+        this.writer = new ThreadPoolExecutor(1, 1, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(properties.getQueueCapacity()),
+                task -> {
+                    Thread thread = new Thread(task, "sql-log");
+                    thread.setDaemon(true);
+                    return thread;
+                },
+                (task, executor) -> dropped.increment());
+    }
+
+    /**
+     * @param rows rows returned or affected, {@code -1} when the driver does not tell
+     */
+    public void record(String sql, int binds, long nanos, long rows, Throwable error) {
+        boolean slow = nanos >= slowThresholdNanos;
+        if (!slow && (properties.getSampleRate() <= 0 || ThreadLocalRandom.current().nextDouble() >= properties.getSampleRate())) {
+            return;
+        }
+        Entry entry = new Entry(sequence.incrementAndGet(), Instant.now(), sql, binds, nanos / 1_000_000.0, rows,
+                error == null ? null : error.toString());
+        if (slow && slowQueries.length() > 0) {
+            slowQueries.set((int) (slowSlot.getAndIncrement() % slowQueries.length()), entry);
+        }
+        writer.execute(() -> {
+            if (slow) log.warn("Slow SQL {}", entry.toLogValue());
+            else log.info("SQL {}", entry.toLogValue());
+        });
+    }
+
+    /**
+     * The slow statements still in the ring buffer, newest first.
+     */
+    public List<Entry> slowQueries() {
+        List<Entry> entries = new ArrayList<>(slowQueries.length());
+        for (int i = 0; i < slowQueries.length(); i++) {
+            Entry entry = slowQueries.get(i);
+            if (entry != null) entries.add(entry);
+        }
+        entries.sort(Comparator.comparingLong(Entry::sequence).reversed());
+        return entries;
+    }
+
+    public void clear() {
+        for (int i = 0; i < slowQueries.length(); i++) slowQueries.set(i, null);
+    }
+
+    @Override
+    public void close() {
+        writer.shutdown();
+    }
+
+    public record Entry(long sequence, Instant at, String sql, int binds, double durationMs, long rows, String error) {
+
+        String toLogValue() {
+            return String.format(Locale.ROOT, "durationMs=%.3f rows=%d binds=%d%s sql=\"%s\"",
+                    durationMs, rows, binds, error == null ? "" : " error=\"" + error + "\"", sql);
+        }
+    }
+}
@@ -0,0 +1,158 @@
+package com.example.userapi.repository;
+
+import com.example.userapi.dto.BulkOperationDTO;
+import com.example.userapi.dto.BulkResultDTO;
+import com.example.userapi.entity.User;
+import org.springframework.http.HttpStatus;
+
+import java.util.*;
+import java.util.stream.Collectors;
+
+/**
+ * Decides the outcome of every operation of a bulk request against the users it touches,
+ * applying the operations in request order, and collects the rows that have to be written.
+ * Writes must be executed as deletes, then updates, then inserts, so that an email released
+ * earlier in the same request can be taken by a later operation.
+ */
+class BulkPlan {
+
+    private final Map<Long, User> users;
+    private final Map<String, Long> emailOwners;
+
+    private final List<BulkResultDTO> results = new ArrayList<>();
+    private final Map<BulkResultDTO, User> created = new LinkedHashMap<>();
+    private final Map<Long, User> updated = new LinkedHashMap<>();
+    private final List<User> deleted = new ArrayList<>();
+
+    BulkPlan(List<BulkOperationDTO> operations, Collection<User> usersById, Collection<User> usersByEmail) {
+        users = usersById.stream().collect(Collectors.toMap(User::getId, u -> u));
+        emailOwners = new HashMap<>();
+        usersByEmail.forEach(u -> emailOwners.put(u.getEmail(), u.getId()));
+
+        for (BulkOperationDTO operation : operations) {
+            if (operation.getOp() == null) {
+                results.add(reject(operation, HttpStatus.BAD_REQUEST, BulkResultDTO.INVALID_OPERATION));
+                continue;
+            }
+            switch (operation.getOp()) {
+                case CREATE -> create(operation);
+                case UPDATE -> update(operation);
+                case DELETE -> delete(operation);
+            }
+        }
+    }
+
+    static Set<Long> ids(List<BulkOperationDTO> operations) {
+        return operations.stream()
+                .filter(o -> o.getOp() != BulkOperationDTO.Operation.CREATE && o.getId() != null)
+                .map(BulkOperationDTO::getId)
+                .collect(Collectors.toSet());
+    }
+
+    static Set<String> emails(List<BulkOperationDTO> operations) {
+        return operations.stream()
+                .filter(o -> o.getOp() != BulkOperationDTO.Operation.DELETE && o.getEmail() != null)
+                .map(BulkOperationDTO::getEmail)
+                .collect(Collectors.toSet());
+    }
+
+    static BulkResultDTO reject(BulkOperationDTO operation, HttpStatus status, String message) {
+        return BulkResultDTO.builder()
+                .op(operation.getOp())
+                .id(operation.getId())
+                .status(status.value())
+                .message(message)
+                .build();
+    }
+
+    List<BulkResultDTO> getResults() {
+        created.forEach((result, user) -> result.setId(user.getId()));
+        return results;
+    }
+
+    Object[] getCreated() {
+        return created.values().toArray();
+    }
+
+    Object[] getUpdated() {
+        return updated.values().toArray();
+    }
+
+    Object[] getDeleted() {
+        return deleted.toArray();
+    }
+
+    private void create(BulkOperationDTO operation) {
+        if (operation.getName() == null || operation.getEmail() == null) {
+            results.add(reject(operation, HttpStatus.BAD_REQUEST, BulkResultDTO.INVALID_OPERATION));
+            return;
+        }
+        if (emailOwners.containsKey(operation.getEmail())) {
+            results.add(reject(operation, HttpStatus.BAD_REQUEST, BulkResultDTO.NOT_UNIQUE_EMAIL));
+            return;
+        }
+        emailOwners.put(operation.getEmail(), null);
+        BulkResultDTO result = accept(operation);
+        created.put(result, new User(operation.getName(), operation.getEmail()));
+        results.add(result);
+    }
+
+    private void update(BulkOperationDTO operation) {
+        if (operation.getId() == null || operation.getName() == null || operation.getEmail() == null) {
+            results.add(reject(operation, HttpStatus.BAD_REQUEST, BulkResultDTO.INVALID_OPERATION));
+            return;
+        }
+        User user = users.get(operation.getId());
+        if (user == null) {
+            results.add(reject(operation, HttpStatus.NOT_FOUND, BulkResultDTO.NOT_FOUND));
+            return;
+        }
+        if (emailOwners.containsKey(operation.getEmail()) && !user.getId().equals(emailOwners.get(operation.getEmail()))) {
+            results.add(reject(operation, HttpStatus.BAD_REQUEST, BulkResultDTO.NOT_UNIQUE_EMAIL));
+            return;
+        }
+        if (!user.getName().equals(operation.getName()) || !user.getEmail().equals(operation.getEmail())) {
+            emailOwners.remove(user.getEmail());
+            emailOwners.put(operation.getEmail(), user.getId());
+            user.setName(operation.getName());
+            user.setEmail(operation.getEmail());
+            updated.put(user.getId(), user);
+        }
+        results.add(accept(operation));
+    }
+
+    private void delete(BulkOperationDTO operation) {
+        if (operation.getId() == null) {
+            results.add(reject(operation, HttpStatus.BAD_REQUEST, BulkResultDTO.INVALID_OPERATION));
+            return;
+        }
+        User user = users.remove(operation.getId());
+        if (user == null) {
+            results.add(reject(operation, HttpStatus.NOT_FOUND, BulkResultDTO.NOT_FOUND));
+            return;
+        }
+        emailOwners.remove(user.getEmail());
+        updated.remove(user.getId());
+        deleted.add(user);
+        BulkResultDTO result = accept(operation);
+        result.setMessage("Deleted");
+        results.add(result);
+    }
+
+    /**
+     * Outcome of an update or delete whose row changed between reading and writing it: a conflict
+     * while the user still exists, otherwise it was deleted in between.
+     */
+    static BulkResultDTO stale(BulkOperationDTO operation, boolean exists) {
+        return exists ? reject(operation, HttpStatus.CONFLICT, BulkResultDTO.CONCURRENT_MODIFICATION)
+                : reject(operation, HttpStatus.NOT_FOUND, BulkResultDTO.NOT_FOUND);
+    }
+
+    static BulkResultDTO accept(BulkOperationDTO operation) {
+        return BulkResultDTO.builder()
+                .op(operation.getOp())
+                .id(operation.getId())
+                .status(HttpStatus.OK.value())
+                .build();
+    }
+}
@@ -0,0 +1,42 @@
+package com.example.userapi.repository;
+
+import com.example.userapi.entity.User;
+import com.example.userapi.util.UserUtils;
+
+import java.util.Objects;
+
+/**
+ * Shared rules of the conditional {@code UPDATE} statements. A statement writes the row only if it
+ * changes and, when the caller sent a version, only while the row still has it, and returns the
+ * row as written or as it is. Partial updates leave the fields that are {@code null} in the
+ * request as they are.
+ */
+final class ConditionalUpdate {
+
+    /**
+     * Bound instead of an expected version when the caller did not send one.
+     */
+    static final long ANY_VERSION = -1;
+
+    private ConditionalUpdate() {
+    }
+
+    static long expectedVersion(User user) {
+        return user.getVersion() == null ? ANY_VERSION : user.getVersion();
+    }
+
+    /**
+     * The returned row is the outcome of the update if it still has the expected version, in which
+     * case nothing had to change, or the next one with the requested fields. Any other version means
+     * that someone else changed the user first. A field missing from the request matches any value.
+     */
+    static User verify(User requested, User row) {
+        if (requested.getVersion() == null) return row;
+        long expected = requested.getVersion();
+        if (row.getVersion() == expected) return row;
+        if (row.getVersion() == expected + 1
+                && (requested.getName() == null || Objects.equals(row.getName(), requested.getName()))
+                && (requested.getEmail() == null || Objects.equals(row.getEmail(), requested.getEmail()))) return row;
+        throw UserUtils.versionMismatch(requested.getId());
+    }
+}
@@ -0,0 +1,42 @@
+package com.example.userapi.repository;
+
+import com.example.userapi.config.ReplicaProperties;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import org.springframework.stereotype.Component;
+import reactor.util.context.ContextView;
+
+/**
+ * Remembers which clients wrote recently, so that their reads stay on the primary for
+ * {@code users.db.replicas.pin-duration} instead of hitting a replica that may not have the
+ * write yet. The client is identified by {@link #CLIENT_KEY} in the Reactor context, and a read
+ * can be forced to the primary with {@link #PRIMARY}.
+ */
+@Component
+public class ReadYourWrites {
+
+    public static final String CLIENT_KEY = ReadYourWrites.class.getName() + ".client";
+    public static final String PRIMARY = ReadYourWrites.class.getName() + ".primary";
+
+    private static final int MAX_PINNED_CLIENTS = 100_000;
+
+    private final Cache<String, Boolean> pinned;
+
+    public ReadYourWrites(ReplicaProperties properties) {
+        this.pinned = Caffeine.newBuilder()
+                .expireAfterWrite(properties.getPinDuration())
+                .maximumSize(MAX_PINNED_CLIENTS)
+                .build();
+    }
+
+    public void pin(ContextView context) {
+        context.<String>getOrEmpty(CLIENT_KEY).ifPresent(client -> pinned.put(client, Boolean.TRUE));
+    }
+
+    public boolean isPinned(ContextView context) {
+        if (context.getOrDefault(PRIMARY, false)) return true;
+        return context.<String>getOrEmpty(CLIENT_KEY)
+                .map(client -> pinned.getIfPresent(client) != null)
+                .orElse(false);
+    }
+}
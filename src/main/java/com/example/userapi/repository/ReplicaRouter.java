@@ -0,0 +1,126 @@
+package com.example.userapi.repository;
+
+import com.example.userapi.config.ReplicaProperties;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.hibernate.reactive.mutiny.Mutiny;
+import org.springframework.scheduling.annotation.Scheduled;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+/**
+ * Sends reads to the replica session factories and everything else to the primary. A replica is
+ * used only while its last lag probe succeeded and reported at most {@code users.db.replicas.max-lag},
+ * and never for a client that {@link ReadYourWrites} pinned to the primary. With no replicas
+ * configured every read goes to the primary.
+ */
+@Slf4j
+public class ReplicaRouter {
+
+    /**
+     * Seconds since the last transaction replayed on a standby, zero when it has replayed all it
+     * received or when the server is not a standby at all.
+     */
+    private static final String LAG = """
+            SELECT CASE
+                WHEN NOT pg_is_in_recovery() OR pg_last_wal_receive_lsn() = pg_last_wal_replay_lsn() THEN 0
+                ELSE COALESCE(EXTRACT(EPOCH FROM now() - pg_last_xact_replay_timestamp()), 0)
+            END""";
+
+    private final Mutiny.SessionFactory primary;
+    private final List<Replica> replicas;
+    private final ReplicaProperties properties;
+    private final ReadYourWrites readYourWrites;
+    private final AtomicInteger next = new AtomicInteger();
+    private final Counter primaryReads;
+    private final Counter replicaReads;
+
+    public ReplicaRouter(Mutiny.SessionFactory primary, List<Mutiny.SessionFactory> replicas, ReplicaProperties properties,
+                         ReadYourWrites readYourWrites, MeterRegistry meterRegistry) {
+        this.primary = primary;
+        this.replicas = replicas.stream().map(Replica::new).toList();
+        this.properties = properties;
+        this.readYourWrites = readYourWrites;
+        this.primaryReads = Counter.builder("users.db.reads").tag("target", "primary").register(meterRegistry);
+        this.replicaReads = Counter.builder("users.db.reads").tag("target", "replica").register(meterRegistry);
+        for (int i = 0; i < this.replicas.size(); i++) {
+            Gauge.builder("users.db.replica.lag", this.replicas.get(i), r -> r.lagSeconds)
+                    .tag("replica", String.valueOf(i))
+                    .baseUnit("seconds")
+                    .register(meterRegistry);
+        }
+    }
+
+    public Mutiny.SessionFactory primary() {
+        return primary;
+    }
+
+    public <T> Mono<T> read(Function<Mutiny.SessionFactory, Mono<T>> query) {
+        return Mono.deferContextual(context -> query.apply(choose(readYourWrites.isPinned(context))));
+    }
+
+    public <T> Flux<T> readMany(Function<Mutiny.SessionFactory, Flux<T>> query) {
+        return Flux.deferContextual(context -> query.apply(choose(readYourWrites.isPinned(context))));
+    }
+
+    /**
+     * Pins the calling client to the primary once the write succeeds.
+     */
+    public <T> Mono<T> write(Mono<T> write) {
+        return Mono.deferContextual(context -> write.doOnSuccess(result -> readYourWrites.pin(context)));
+    }
+
+    public void close() {
+        replicas.forEach(replica -> replica.factory.close());
+    }
+
+    @Scheduled(initialDelay = 0, fixedDelayString = "${users.db.replicas.lag-check-interval:PT1S}")
+    public void probeLag() {
+        replicas.forEach(replica -> Mono.fromFuture(() -> replica.factory.withStatelessSession(session ->
+                                session.createNativeQuery(LAG, Double.class).getSingleResult())
+                        .convert().toCompletableFuture())
+                .subscribe(lag -> replica.update(lag, properties),
+                        e -> {
+                            if (replica.healthy) log.warn("Replica lag probe failed, reading from the primary", e);
+                            replica.healthy = false;
+                        }));
+    }
+
+    private Mutiny.SessionFactory choose(boolean pinned) {
+        if (!pinned) {
+            int size = replicas.size();
+            int start = size == 0 ? 0 : Math.floorMod(next.getAndIncrement(), size);
+            for (int i = 0; i < size; i++) {
+                Replica replica = replicas.get((start + i) % size);
+                if (replica.healthy) {
+                    replicaReads.increment();
+                    return replica.factory;
+                }
+            }
+        }
+        primaryReads.increment();
+        return primary;
+    }
+
+    private static class Replica {
+
+        private final Mutiny.SessionFactory factory;
+        private volatile boolean healthy;
+        private volatile double lagSeconds;
+
+        Replica(Mutiny.SessionFactory factory) {
+            this.factory = factory;
+        }
+
+        void update(double lag, ReplicaProperties properties) {
+            lagSeconds = lag;
+            healthy = lag * 1000 <= properties.getMaxLag().toMillis();
+        }
+    }
+}
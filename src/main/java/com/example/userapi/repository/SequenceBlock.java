@@ -0,0 +1,40 @@
+package com.example.userapi.repository;
+
+import reactor.core.publisher.Mono;
+
+import java.util.function.Supplier;
+
+/**
+ * Hands out ids from blocks of {@code size} consecutive values, where each block starts at a value
+ * of {@code users_seq}. This matches how Hibernate allocates ids for {@link com.example.userapi.entity.User},
+ * so ids stay unique whichever repository inserted the row.
+ */
+class SequenceBlock {
+
+    private final int size;
+    private final Supplier<Mono<Long>> nextBlock;
+
+    private long block;
+    private int offset;
+
+    SequenceBlock(int size, Supplier<Mono<Long>> nextBlock) {
+        this.size = size;
+        this.nextBlock = nextBlock;
+        this.offset = size;
+    }
+
+    Mono<Long> next() {
+        return Mono.defer(() -> {
+            synchronized (this) {
+                if (offset < size) return Mono.just(block + offset++);
+            }
+            return nextBlock.get().map(start -> {
+                synchronized (this) {
+                    block = start;
+                    offset = 1;
+                }
+                return start;
+            });
+        });
+    }
+}
@@ -0,0 +1,34 @@
+package com.example.userapi.repository;
+
+import com.example.userapi.metrics.RequestTimings;
+import io.smallrye.mutiny.Uni;
+import org.hibernate.reactive.mutiny.Mutiny;
+import reactor.core.publisher.Mono;
+
+import java.util.function.Function;
+
+/**
+ * Opens Hibernate Reactive sessions for the repositories as a {@link Mono}. Every session, on the
+ * primary, a replica or a shard, runs with the {@link RequestTimings} of the subscriber bound by
+ * {@link RequestTimings#bind}, so its connection and statements show up in {@code Server-Timing}.
+ */
+final class Sessions {
+
+    private Sessions() {
+    }
+
+    static <T> Mono<T> withStatelessSession(Mutiny.SessionFactory factory, Function<Mutiny.StatelessSession, Uni<T>> work) {
+        return Mono.deferContextual(context -> Mono.fromFuture(factory.withStatelessSession(RequestTimings.bind(context, work))
+                .convert().toCompletableFuture()));
+    }
+
+    static <T> Mono<T> withStatelessTransaction(Mutiny.SessionFactory factory, Function<Mutiny.StatelessSession, Uni<T>> work) {
+        return Mono.deferContextual(context -> Mono.fromFuture(factory.withStatelessTransaction(RequestTimings.bind(context, work))
+                .convert().toCompletableFuture()));
+    }
+
+    static <T> Mono<T> withTransaction(Mutiny.SessionFactory factory, Function<Mutiny.Session, Uni<T>> work) {
+        return Mono.deferContextual(context -> Mono.fromFuture(factory.withTransaction(RequestTimings.bind(context, work))
+                .convert().toCompletableFuture()));
+    }
+}
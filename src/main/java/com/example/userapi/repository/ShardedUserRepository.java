@@ -0,0 +1,305 @@
+package com.example.userapi.repository;
+
+import com.example.userapi.dto.BulkOperationDTO;
+import com.example.userapi.dto.BulkResultDTO;
+import com.example.userapi.entity.User;
+import com.example.userapi.util.UserUtils;
+import io.smallrye.mutiny.Uni;
+import org.hibernate.exception.ConstraintViolationException;
+import org.hibernate.reactive.mutiny.Mutiny;
+import org.springframework.context.annotation.Profile;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Repository;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * {@link UserRepository} that spreads users over {@link Shards} by a hash of their id. Active with
+ * the {@code sharded} profile.
+ * <p>
+ * Ids come from {@code users_seq} on the coordinator, so they are unique across shards. Emails are
+ * claimed in the {@code user_emails} directory on the coordinator before a row is written to its
+ * shard and released after it is gone. A failed shard write releases its claim again, but a crash
+ * in between can leave a stale claim that blocks the email until it is removed by hand.
+ */
+@Repository
+@Profile("sharded")
+public class ShardedUserRepository implements UserRepository {
+
+    private static final int ID_BLOCK_SIZE = 50;
+
+    private static final String NEXT_ID_BLOCK = "SELECT nextval('users_seq')";
+
+    private static final String CLAIM_EMAIL = """
+            INSERT INTO user_emails (email, user_id) VALUES (:email, :id)
+            ON CONFLICT (email) DO NOTHING
+            RETURNING user_id""";
+
+    private static final String RELEASE_EMAIL = "DELETE FROM user_emails WHERE email = :email AND user_id = :id RETURNING user_id";
+
+    private static final String EXISTS_BY_EMAIL = "SELECT 1 FROM user_emails WHERE email = :email";
+
+    private static final String INSERT = "INSERT INTO users (id, name, email) VALUES (:id, :name, :email) RETURNING version";
+
+    /**
+     * Writes the row only if one of the columns actually changes and it still has the expected
+     * version, if any. Otherwise the second branch returns the row as it is, so an empty result
+     * means that there is no such user. See {@link ConditionalUpdate}.
+     */
+    private static final String UPDATE = """
+            WITH updated AS (
+                UPDATE users SET name = :name, email = :email, version = version + 1
+                WHERE id = :id AND (CAST(:version AS bigint) < 0 OR version = :version)
+                    AND (name IS DISTINCT FROM :name OR email IS DISTINCT FROM :email)
+                RETURNING id, name, email, version)
+            SELECT id, name, email, version FROM updated
+            UNION ALL
+            SELECT id, name, email, version FROM users WHERE id = :id AND NOT EXISTS (SELECT 1 FROM updated)""";
+
+    /**
+     * {@link #UPDATE} that keeps the columns bound to {@code null}.
+     */
+    private static final String PATCH = """
+            WITH updated AS (
+                UPDATE users SET name = COALESCE(:name, name), email = COALESCE(:email, email), version = version + 1
+                WHERE id = :id AND (CAST(:version AS bigint) < 0 OR version = :version)
+                    AND (name IS DISTINCT FROM COALESCE(:name, name) OR email IS DISTINCT FROM COALESCE(:email, email))
+                RETURNING id, name, email, version)
+            SELECT id, name, email, version FROM updated
+            UNION ALL
+            SELECT id, name, email, version FROM users WHERE id = :id AND NOT EXISTS (SELECT 1 FROM updated)""";
+
+    private static final String DELETE = "DELETE FROM users WHERE id = :id RETURNING email";
+
+    /**
+     * The search of {@link UserRepositoryImpl} with the rank of every user, so that the results of
+     * the shards can be merged.
+     */
+    private static final String SEARCH = """
+            SELECT id, name, email, version,
+                bool_or(starts_with(lower(name), lower(:query)) OR starts_with(lower(email), lower(:query))) AS prefix,
+                min(distance) AS distance
+            FROM (
+                (SELECT id, name, email, version, CAST(:query AS text) <<-> name AS distance
+                 FROM users ORDER BY CAST(:query AS text) <<-> name LIMIT :limit)
+                UNION ALL
+                (SELECT id, name, email, version, CAST(:query AS text) <<-> email AS distance
+                 FROM users ORDER BY CAST(:query AS text) <<-> email LIMIT :limit)) matches
+            WHERE distance < 0.7
+            GROUP BY id, name, email, version
+            ORDER BY prefix DESC, distance, id
+            LIMIT :limit""";
+
+    private final Shards shards;
+    private final SequenceBlock idSequence;
+
+    public ShardedUserRepository(Shards shards) {
+        this.shards = shards;
+        this.idSequence = new SequenceBlock(ID_BLOCK_SIZE, () -> execute(shards.coordinator(), session ->
+                session.createNativeQuery(NEXT_ID_BLOCK, Long.class).getSingleResult()));
+    }
+
+    @Override
+    public Mono<User> create(User user) {
+        return idSequence.next().flatMap(id -> claim(user.getEmail(), id)
+                .then(execute(shards.of(id), session -> session.createNativeQuery(INSERT, Long.class)
+                                .setParameter("id", id)
+                                .setParameter("name", user.getName())
+                                .setParameter("email", user.getEmail())
+                                .getSingleResult())
+                        .onErrorResume(e -> release(user.getEmail(), id).then(Mono.error(e))))
+                .map(version -> new User(id, user.getName(), user.getEmail(), version)));
+    }
+
+    @Override
+    public Mono<User> update(User user) {
+        return update(UPDATE, user);
+    }
+
+    @Override
+    public Mono<User> patch(User user) {
+        return update(PATCH, user);
+    }
+
+    private Mono<User> update(String sql, User user) {
+        Mutiny.SessionFactory shard = shards.of(user.getId());
+        return execute(shard, session -> session.get(User.class, user.getId()))
+                .flatMap(current -> {
+                    if (user.getVersion() != null && !user.getVersion().equals(current.getVersion())) {
+                        return Mono.error(UserUtils.versionMismatch(user.getId()));
+                    }
+                    if (user.getEmail() == null || current.getEmail().equals(user.getEmail())) return updateRow(shard, sql, user);
+                    return claim(user.getEmail(), user.getId())
+                            .then(updateRow(shard, sql, user)
+                                    .onErrorResume(e -> release(user.getEmail(), user.getId()).then(Mono.error(e)))
+                                    .switchIfEmpty(release(user.getEmail(), user.getId()).then(Mono.empty()))
+                                    .flatMap(updated -> release(current.getEmail(), user.getId()).thenReturn(updated)));
+                });
+    }
+
+    @Override
+    public Mono<Boolean> delete(Long id) {
+        return execute(shards.of(id), session -> session.createNativeQuery(DELETE, String.class)
+                        .setParameter("id", id)
+                        .getSingleResultOrNull())
+                .flatMap(email -> release(email, id).thenReturn(true))
+                .defaultIfEmpty(false);
+    }
+
+    @Override
+    public Mono<User> get(Long id) {
+        return execute(shards.of(id), session -> session.get(User.class, id));
+    }
+
+    /**
+     * Asks every shard for its first {@code limit} users after {@code afterId} and keeps the
+     * overall first {@code limit} of them.
+     */
+    @Override
+    public Flux<User> getAll(Long afterId, int limit) {
+        return Flux.fromIterable(shards.all())
+                .flatMap(shard -> execute(shard, session -> session.createQuery(
+                                "SELECT u FROM User u WHERE u.id > :afterId ORDER BY u.id", User.class)
+                        .setParameter("afterId", afterId)
+                        .setMaxResults(limit)
+                        .getResultList())
+                        .flatMapIterable(users -> users))
+                .sort(Comparator.comparing(User::getId))
+                .take(limit);
+    }
+
+    @Override
+    public Flux<User> getAllById(Collection<Long> ids) {
+        return Flux.fromIterable(ids.stream().collect(Collectors.groupingBy(shards::indexOf)).entrySet())
+                .flatMap(owned -> execute(shards.all().get(owned.getKey()), session -> session.createQuery(
+                                "SELECT u FROM User u WHERE u.id IN :ids", User.class)
+                        .setParameter("ids", owned.getValue())
+                        .getResultList())
+                        .flatMapIterable(users -> users));
+    }
+
+    /**
+     * Asks every shard for its best {@code limit} matches and keeps the overall best {@code limit}
+     * of them.
+     */
+    @Override
+    public Flux<User> search(String query, int limit) {
+        return Flux.fromIterable(shards.all())
+                .flatMap(shard -> execute(shard, session -> session.createNativeQuery(SEARCH, Object[].class)
+                        .setParameter("query", query)
+                        .setParameter("limit", limit)
+                        .getResultList())
+                        .flatMapIterable(rows -> rows))
+                .map(Match::of)
+                .sort(Match.RANK)
+                .take(limit)
+                .map(Match::user);
+    }
+
+    @Override
+    public Mono<Boolean> existsByEmail(String email) {
+        return execute(shards.coordinator(), session -> session.createNativeQuery(EXISTS_BY_EMAIL, Integer.class)
+                        .setParameter("email", email)
+                        .getSingleResultOrNull())
+                .hasElement();
+    }
+
+    @Override
+    public Flux<User> stream(int fetchSize) {
+        return page(0L, fetchSize)
+                .expand(users -> users.size() < fetchSize ? Mono.empty() :
+                        page(users.get(users.size() - 1).getId(), fetchSize))
+                .concatMapIterable(users -> users, 1);
+    }
+
+    private Mono<List<User>> page(Long afterId, int limit) {
+        return Mono.defer(() -> getAll(afterId, limit).collectList());
+    }
+
+    /**
+     * A transaction cannot span shards, so the operations are applied one at a time in request
+     * order, each with the same checks as the single-user calls.
+     */
+    @Override
+    public Mono<List<BulkResultDTO>> bulk(List<BulkOperationDTO> operations) {
+        return Flux.fromIterable(operations)
+                .concatMap(operation -> apply(operation)
+                        .onErrorResume(ConstraintViolationException.class, e -> Mono.just(
+                                BulkPlan.reject(operation, HttpStatus.BAD_REQUEST, BulkResultDTO.NOT_UNIQUE_EMAIL))))
+                .collectList();
+    }
+
+    private Mono<BulkResultDTO> apply(BulkOperationDTO operation) {
+        BulkResultDTO invalid = BulkPlan.reject(operation, HttpStatus.BAD_REQUEST, BulkResultDTO.INVALID_OPERATION);
+        BulkResultDTO notFound = BulkPlan.reject(operation, HttpStatus.NOT_FOUND, BulkResultDTO.NOT_FOUND);
+        if (operation.getOp() == null) return Mono.just(invalid);
+        return switch (operation.getOp()) {
+            case CREATE -> operation.getName() == null || operation.getEmail() == null ? Mono.just(invalid) :
+                    create(new User(operation.getName(), operation.getEmail())).map(user -> {
+                        BulkResultDTO result = BulkPlan.accept(operation);
+                        result.setId(user.getId());
+                        return result;
+                    });
+            case UPDATE -> operation.getId() == null || operation.getName() == null || operation.getEmail() == null ? Mono.just(invalid) :
+                    update(new User(operation.getId(), operation.getName(), operation.getEmail()))
+                            .map(user -> BulkPlan.accept(operation))
+                            .defaultIfEmpty(notFound);
+            case DELETE -> operation.getId() == null ? Mono.just(invalid) :
+                    delete(operation.getId()).map(deleted -> {
+                        if (!deleted) return notFound;
+                        BulkResultDTO result = BulkPlan.accept(operation);
+                        result.setMessage("Deleted");
+                        return result;
+                    });
+        };
+    }
+
+    private Mono<User> updateRow(Mutiny.SessionFactory shard, String sql, User user) {
+        return execute(shard, session -> session.createNativeQuery(sql, User.class)
+                        .setParameter("id", user.getId())
+                        .setParameter("name", user.getName())
+                        .setParameter("email", user.getEmail())
+                        .setParameter("version", ConditionalUpdate.expectedVersion(user))
+                        .getSingleResultOrNull())
+                .map(row -> ConditionalUpdate.verify(user, row));
+    }
+
+    private Mono<Void> claim(String email, Long id) {
+        return execute(shards.coordinator(), session -> session.createNativeQuery(CLAIM_EMAIL, Long.class)
+                        .setParameter("email", email)
+                        .setParameter("id", id)
+                        .getSingleResultOrNull())
+                .switchIfEmpty(Mono.error(UserUtils::notUniqueEmail))
+                .then();
+    }
+
+    private Mono<Void> release(String email, Long id) {
+        return execute(shards.coordinator(), session -> session.createNativeQuery(RELEASE_EMAIL, Long.class)
+                        .setParameter("email", email)
+                        .setParameter("id", id)
+                        .getSingleResultOrNull())
+                .then();
+    }
+
+    private static <T> Mono<T> execute(Mutiny.SessionFactory factory, Function<Mutiny.StatelessSession, Uni<T>> work) {
+        return Sessions.withStatelessSession(factory, work);
+    }
+
+    private record Match(User user, boolean prefix, double distance) {
+
+        static final Comparator<Match> RANK = Comparator.comparing(Match::prefix).reversed()
+                .thenComparingDouble(Match::distance)
+                .thenComparing(match -> match.user().getId());
+
+        static Match of(Object[] row) {
+            return new Match(new User(((Number) row[0]).longValue(), (String) row[1], (String) row[2], ((Number) row[3]).longValue()),
+                    (Boolean) row[4], ((Number) row[5]).doubleValue());
+        }
+    }
+}
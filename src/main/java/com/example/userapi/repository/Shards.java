@@ -0,0 +1,40 @@
+package com.example.userapi.repository;
+
+import org.hibernate.reactive.mutiny.Mutiny;
+
+import java.util.List;
+
+/**
+ * Session factories of the shard databases. The coordinator holds {@code users_seq} and the
+ * {@code user_emails} directory, and is also the only shard when no shards are configured.
+ */
+public class Shards {
+
+    private final Mutiny.SessionFactory coordinator;
+    private final List<Mutiny.SessionFactory> shards;
+
+    public Shards(Mutiny.SessionFactory coordinator, List<Mutiny.SessionFactory> shards) {
+        this.coordinator = coordinator;
+        this.shards = shards.isEmpty() ? List.of(coordinator) : shards;
+    }
+
+    Mutiny.SessionFactory coordinator() {
+        return coordinator;
+    }
+
+    List<Mutiny.SessionFactory> all() {
+        return shards;
+    }
+
+    int indexOf(long id) {
+        return Math.floorMod(Long.hashCode(id * 0x9E3779B97F4A7C15L), shards.size());
+    }
+
+    Mutiny.SessionFactory of(long id) {
+        return shards.get(indexOf(id));
+    }
+
+    public void close() {
+        shards.stream().filter(shard -> shard != coordinator).forEach(Mutiny.SessionFactory::close);
+    }
+}
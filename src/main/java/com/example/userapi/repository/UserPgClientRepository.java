@@ -0,0 +1,376 @@
+package com.example.userapi.repository;
+
+import com.example.userapi.dto.BulkOperationDTO;
+import com.example.userapi.dto.BulkResultDTO;
+import com.example.userapi.entity.User;
+import com.example.userapi.metrics.RequestTimings;
+import com.example.userapi.metrics.SqlStatementLog;
+import io.vertx.core.Future;
+import io.vertx.pgclient.PgException;
+import io.vertx.sqlclient.Pool;
+import io.vertx.sqlclient.Row;
+import io.vertx.sqlclient.RowSet;
+import io.vertx.sqlclient.RowStream;
+import io.vertx.sqlclient.SqlClient;
+import io.vertx.sqlclient.SqlConnection;
+import io.vertx.sqlclient.SqlResult;
+import io.vertx.sqlclient.Transaction;
+import io.vertx.sqlclient.Tuple;
+import org.hibernate.StaleStateException;
+import org.hibernate.exception.ConstraintViolationException;
+import org.springframework.context.annotation.Profile;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Repository;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.FluxSink;
+import reactor.core.publisher.Mono;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * {@link UserRepository} that sends SQL straight through the Vert.x PG pool and maps rows by hand,
+ * without sessions, a persistence context or dirty checking. Active with the {@code pgclient}
+ * profile instead of {@link UserRepositoryImpl}.
+ * <p>
+ * Ids come from {@code users_seq} in blocks of {@link #ID_BLOCK_SIZE}, the same way Hibernate
+ * allocates them, so both implementations can write to the same table.
+ * <p>
+ * Every statement goes to the {@link SqlStatementLog} and to the {@code Server-Timing} of its
+ * request, as it does through the instrumented pool of the Hibernate repositories.
+ */
+@Repository
+@Profile("pgclient")
+public class UserPgClientRepository implements UserRepository {
+
+    private static final int ID_BLOCK_SIZE = 50;
+
+    private static final String NEXT_ID_BLOCK = "SELECT nextval('users_seq')";
+
+    private static final String INSERT = "INSERT INTO users (id, name, email) VALUES ($1, $2, $3) RETURNING version";
+
+    private static final String SELECT = "SELECT id, name, email, version FROM users WHERE id = $1";
+
+    private static final String SELECT_PAGE = "SELECT id, name, email, version FROM users WHERE id > $1 ORDER BY id LIMIT $2";
+
+    private static final String SELECT_BY_IDS = "SELECT id, name, email, version FROM users WHERE id = ANY($1)";
+
+    private static final String SELECT_BY_EMAILS = "SELECT id, name, email, version FROM users WHERE email = ANY($1)";
+
+    private static final String SELECT_ALL = "SELECT id, name, email, version FROM users ORDER BY id";
+
+    /**
+     * Writes the row only if one of the columns actually changes and it still has the expected
+     * version, if any. Otherwise the second branch returns the row as it is, so an empty result
+     * means that there is no such user. See {@link ConditionalUpdate}.
+     */
+    private static final String UPDATE = """
+            WITH updated AS (
+                UPDATE users SET name = $2, email = $3, version = version + 1
+                WHERE id = $1 AND ($4::bigint < 0 OR version = $4::bigint)
+                    AND (name IS DISTINCT FROM $2 OR email IS DISTINCT FROM $3)
+                RETURNING id, name, email, version)
+            SELECT id, name, email, version FROM updated
+            UNION ALL
+            SELECT id, name, email, version FROM users WHERE id = $1 AND NOT EXISTS (SELECT 1 FROM updated)""";
+
+    /**
+     * {@link #UPDATE} that keeps the columns bound to {@code null}. A row where nothing changes is
+     * not written at all. Otherwise the update is never HOT, since the search indexes cover both
+     * name and email, so it adds entries to every index on {@code users}, including
+     * {@code users_unique_email_idx} for an unchanged email.
+     */
+    private static final String PATCH = """
+            WITH updated AS (
+                UPDATE users SET name = COALESCE($2, name), email = COALESCE($3, email), version = version + 1
+                WHERE id = $1 AND ($4::bigint < 0 OR version = $4::bigint)
+                    AND (name IS DISTINCT FROM COALESCE($2, name) OR email IS DISTINCT FROM COALESCE($3, email))
+                RETURNING id, name, email, version)
+            SELECT id, name, email, version FROM updated
+            UNION ALL
+            SELECT id, name, email, version FROM users WHERE id = $1 AND NOT EXISTS (SELECT 1 FROM updated)""";
+
+    private static final String UPDATE_BY_ID = "UPDATE users SET name = $2, email = $3, version = version + 1 WHERE id = $1 AND version = $4";
+
+    private static final String DELETE = "DELETE FROM users WHERE id = $1 RETURNING id";
+
+    /**
+     * Takes the {@code limit} nearest names and the {@code limit} nearest emails by trigram word
+     * similarity, each walked in order from its GiST index, so the cost depends on the limit and
+     * not on the size of the table. Prefix matches are ranked first among them, and candidates
+     * with a word similarity below 0.3 are dropped.
+     */
+    private static final String SEARCH = """
+            SELECT id, name, email, version FROM (
+                (SELECT id, name, email, version, $1::text <<-> name AS distance
+                 FROM users ORDER BY $1::text <<-> name LIMIT $2)
+                UNION ALL
+                (SELECT id, name, email, version, $1::text <<-> email AS distance
+                 FROM users ORDER BY $1::text <<-> email LIMIT $2)) matches
+            WHERE distance < 0.7
+            GROUP BY id, name, email, version
+            ORDER BY bool_or(starts_with(lower(name), lower($1)) OR starts_with(lower(email), lower($1))) DESC,
+                min(distance), id
+            LIMIT $2""";
+
+    private static final String DELETE_BY_ID = "DELETE FROM users WHERE id = $1";
+
+    private static final String EXISTS_BY_EMAIL = "SELECT 1 FROM users WHERE email = $1";
+
+    private static final String EXISTS_BY_ID = "SELECT 1 FROM users WHERE id = $1";
+
+    private final Pool pool;
+    private final SqlStatementLog statementLog;
+    private final SequenceBlock idSequence;
+
+    public UserPgClientRepository(Pool pool, SqlStatementLog statementLog) {
+        this.pool = pool;
+        this.statementLog = statementLog;
+        this.idSequence = new SequenceBlock(ID_BLOCK_SIZE, () -> execute(statements -> statements.logged(NEXT_ID_BLOCK, 0,
+                        () -> pool.query(NEXT_ID_BLOCK).execute()))
+                .map(rows -> rows.iterator().next().getLong(0)));
+    }
+
+    @Override
+    public Mono<User> create(User user) {
+        return idSequence.next()
+                .flatMap(id -> execute(statements -> statements.rows(pool, INSERT, Tuple.of(id, user.getName(), user.getEmail())))
+                        .map(rows -> new User(id, user.getName(), user.getEmail(), rows.iterator().next().getLong(0))));
+    }
+
+    @Override
+    public Mono<User> update(User user) {
+        return update(UPDATE, user);
+    }
+
+    @Override
+    public Mono<User> patch(User user) {
+        return update(PATCH, user);
+    }
+
+    private Mono<User> update(String sql, User user) {
+        return execute(statements -> statements.users(pool, sql,
+                        Tuple.of(user.getId(), user.getName(), user.getEmail(), ConditionalUpdate.expectedVersion(user))))
+                .mapNotNull(UserPgClientRepository::first)
+                .map(row -> ConditionalUpdate.verify(user, row));
+    }
+
+    @Override
+    public Mono<Boolean> delete(Long id) {
+        return execute(statements -> statements.rows(pool, DELETE, Tuple.of(id)))
+                .map(rows -> rows.rowCount() > 0);
+    }
+
+    @Override
+    public Mono<User> get(Long id) {
+        return execute(statements -> statements.users(pool, SELECT, Tuple.of(id)))
+                .mapNotNull(UserPgClientRepository::first);
+    }
+
+    @Override
+    public Flux<User> getAll(Long afterId, int limit) {
+        return execute(statements -> statements.users(pool, SELECT_PAGE, Tuple.of(afterId, limit)))
+                .flatMapIterable(users -> users);
+    }
+
+    @Override
+    public Flux<User> getAllById(Collection<Long> ids) {
+        if (ids.isEmpty()) return Flux.empty();
+        return execute(statements -> statements.users(pool, SELECT_BY_IDS, Tuple.of(ids.toArray(Long[]::new))))
+                .flatMapIterable(users -> users);
+    }
+
+    @Override
+    public Flux<User> search(String query, int limit) {
+        return execute(statements -> statements.users(pool, SEARCH, Tuple.of(query, limit)))
+                .flatMapIterable(users -> users);
+    }
+
+    @Override
+    public Mono<Boolean> existsByEmail(String email) {
+        return execute(statements -> statements.rows(pool, EXISTS_BY_EMAIL, Tuple.of(email)))
+                .map(rows -> rows.size() > 0);
+    }
+
+    /**
+     * Reads the table through a server-side cursor that fetches {@code fetchSize} rows at a time,
+     * and only as fast as the subscriber requests them.
+     */
+    @Override
+    public Flux<User> stream(int fetchSize) {
+        return Flux.create(sink -> pool.getConnection().onComplete(connected -> {
+            if (connected.failed()) {
+                sink.error(translate(connected.cause()));
+                return;
+            }
+            SqlConnection connection = connected.result();
+            connection.begin()
+                    .compose(transaction -> connection.prepare(SELECT_ALL)
+                            .onSuccess(statement -> pipe(statement.createStream(fetchSize), connection, transaction, sink)))
+                    .onFailure(e -> {
+                        connection.close();
+                        sink.error(translate(e));
+                    });
+        }));
+    }
+
+    /**
+     * The whole stream is logged as one {@link #SELECT_ALL} statement once it ends.
+     */
+    private void pipe(RowStream<Row> rows, SqlConnection connection, Transaction transaction, FluxSink<User> sink) {
+        AtomicBoolean closed = new AtomicBoolean();
+        AtomicLong streamed = new AtomicLong();
+        long start = System.nanoTime();
+        Function<Throwable, Future<Void>> close = error -> {
+            if (!closed.compareAndSet(false, true)) return Future.succeededFuture();
+            statementLog.record(SELECT_ALL, 0, System.nanoTime() - start, streamed.get(), error);
+            return rows.close()
+                    .compose(v -> error == null ? transaction.commit() : transaction.rollback())
+                    .eventually(() -> connection.close());
+        };
+        rows.pause();
+        rows.handler(row -> {
+            streamed.incrementAndGet();
+            sink.next(toUser(row));
+        });
+        rows.exceptionHandler(e -> close.apply(e).onComplete(v -> sink.error(translate(e))));
+        rows.endHandler(v -> close.apply(null).onComplete(c -> {
+            if (c.succeeded()) sink.complete();
+            else sink.error(translate(c.cause()));
+        }));
+        sink.onCancel(() -> close.apply(new CancellationException()));
+        if (sink.isCancelled()) close.apply(new CancellationException());
+        else sink.onRequest(rows::fetch);
+    }
+
+    @Override
+    public Mono<List<BulkResultDTO>> bulk(List<BulkOperationDTO> operations) {
+        return bulkInTransaction(operations)
+                .onErrorResume(e -> e instanceof ConstraintViolationException || e instanceof StaleStateException,
+                        e -> Flux.fromIterable(operations)
+                                .concatMap(operation -> bulkInTransaction(List.of(operation))
+                                        .onErrorResume(ConstraintViolationException.class, ex -> Mono.just(List.of(
+                                                BulkPlan.reject(operation, HttpStatus.BAD_REQUEST, BulkResultDTO.NOT_UNIQUE_EMAIL))))
+                                        .onErrorResume(StaleStateException.class, ex -> existsById(operation.getId())
+                                                .map(exists -> List.of(BulkPlan.stale(operation, exists)))))
+                                .flatMapIterable(results -> results)
+                                .collectList());
+    }
+
+    private Mono<Boolean> existsById(Long id) {
+        return execute(statements -> statements.rows(pool, EXISTS_BY_ID, Tuple.of(id)))
+                .map(rows -> rows.size() > 0);
+    }
+
+    private Mono<List<BulkResultDTO>> bulkInTransaction(List<BulkOperationDTO> operations) {
+        Long[] ids = BulkPlan.ids(operations).toArray(Long[]::new);
+        String[] emails = BulkPlan.emails(operations).toArray(String[]::new);
+        return Flux.range(0, (int) operations.stream().filter(o -> o.getOp() == BulkOperationDTO.Operation.CREATE).count())
+                .concatMap(i -> idSequence.next())
+                .collectList()
+                .flatMap(newIds -> execute(statements -> pool.withTransaction(connection -> findAll(statements, connection, SELECT_BY_IDS, ids)
+                        .compose(users -> findAll(statements, connection, SELECT_BY_EMAILS, emails)
+                                .map(owners -> new BulkPlan(operations, users, owners)))
+                        .compose(plan -> {
+                            Object[] created = plan.getCreated();
+                            for (int i = 0; i < created.length; i++) ((User) created[i]).setId(newIds.get(i));
+                            return writeAll(statements, connection, DELETE_BY_ID, plan.getDeleted(), u -> Tuple.of(u.getId()), true)
+                                    .compose(v -> writeAll(statements, connection, UPDATE_BY_ID, plan.getUpdated(),
+                                            u -> Tuple.of(u.getId(), u.getName(), u.getEmail(), u.getVersion()), true))
+                                    .compose(v -> writeAll(statements, connection, INSERT, created,
+                                            u -> Tuple.of(u.getId(), u.getName(), u.getEmail()), false))
+                                    .map(v -> plan.getResults());
+                        }))));
+    }
+
+    private static Future<List<User>> findAll(Statements statements, SqlConnection connection, String query, Object[] values) {
+        if (values.length == 0) return Future.succeededFuture(List.of());
+        return statements.users(connection, query, Tuple.of(values))
+                .map(users -> {
+                    List<User> result = new ArrayList<>(users.size());
+                    users.forEach(result::add);
+                    return result;
+                });
+    }
+
+    private static Future<Void> writeAll(Statements statements, SqlConnection connection, String sql, Object[] users,
+                                         Function<User, Tuple> parameters, boolean checkRowCount) {
+        if (users.length == 0) return Future.succeededFuture();
+        List<Tuple> batch = Arrays.stream(users).map(u -> parameters.apply((User) u)).toList();
+        return statements.logged(sql, batch.stream().mapToInt(Tuple::size).sum(), () -> connection.preparedQuery(sql).executeBatch(batch)).compose(rows -> {
+            for (RowSet<Row> result = rows; result != null; result = result.next()) {
+                if (checkRowCount && result.rowCount() == 0) {
+                    return Future.failedFuture(new StaleStateException("Row was updated or deleted by another transaction"));
+                }
+            }
+            return Future.succeededFuture();
+        });
+    }
+
+    private static long rowCount(SqlResult<?> result) {
+        long rows = 0;
+        for (SqlResult<?> each = result; each != null; each = each.next()) rows += each.rowCount();
+        return rows;
+    }
+
+    private <T> Mono<T> execute(Function<Statements, Future<T>> query) {
+        return Mono.deferContextual(context -> Mono.fromCompletionStage(() ->
+                        query.apply(new Statements(RequestTimings.from(context).orElse(null))).toCompletionStage()))
+                .onErrorMap(PgException.class, UserPgClientRepository::translate);
+    }
+
+    private static Throwable translate(Throwable e) {
+        if (e instanceof PgException pg && pg.getSqlState() != null && pg.getSqlState().startsWith("23")) {
+            return new ConstraintViolationException(pg.getErrorMessage(), null, pg.getConstraint());
+        }
+        return e;
+    }
+
+    private static User first(RowSet<User> users) {
+        var iterator = users.iterator();
+        return iterator.hasNext() ? iterator.next() : null;
+    }
+
+    private static User toUser(Row row) {
+        return new User(row.getLong(0), row.getString(1), row.getString(2), row.getLong(3));
+    }
+
+    /**
+     * Sends the statements of one call and records each of them in the {@link SqlStatementLog} and,
+     * if the call came from a request with {@link RequestTimings}, as its {@code sql} phase.
+     */
+    private final class Statements {
+
+        private final RequestTimings timings;
+
+        Statements(RequestTimings timings) {
+            this.timings = timings;
+        }
+
+        Future<RowSet<User>> users(SqlClient client, String sql, Tuple parameters) {
+            return logged(sql, parameters.size(), () -> client.preparedQuery(sql)
+                    .mapping(UserPgClientRepository::toUser)
+                    .execute(parameters));
+        }
+
+        Future<RowSet<Row>> rows(SqlClient client, String sql, Tuple parameters) {
+            return logged(sql, parameters.size(), () -> client.preparedQuery(sql).execute(parameters));
+        }
+
+        <R extends SqlResult<?>> Future<R> logged(String sql, int binds, Supplier<Future<R>> statement) {
+            long start = System.nanoTime();
+            return statement.get().andThen(result -> {
+                long nanos = System.nanoTime() - start;
+                if (timings != null) timings.record("sql", null, nanos);
+                statementLog.record(sql, binds, nanos, result.succeeded() ? rowCount(result.result()) : -1, result.cause());
+            });
+        }
+    }
+}
@@ -1,18 +1,42 @@
 package com.example.userapi.repository;
 
+import com.example.userapi.dto.BulkOperationDTO;
+import com.example.userapi.dto.BulkResultDTO;
 import com.example.userapi.entity.User;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
+import java.util.Collection;
+import java.util.List;
+
 
 public interface UserRepository {
     Mono<User> create(User user);
 
     Mono<User> update(User user);
 
+    /**
+     * Same as {@link #update}, but writes only the fields of {@code user} that are not {@code null}.
+     */
+    Mono<User> patch(User user);
+
     Mono<Boolean> delete(Long id);
 
     Mono<User> get(Long id);
 
-    Flux<User> getAll();
-}
\ No newline at end of file
+    Flux<User> getAll(Long afterId, int limit);
+
+    Flux<User> getAllById(Collection<Long> ids);
+
+    /**
+     * Returns at most {@code limit} users whose name or email starts with or resembles
+     * {@code query}, prefix matches first and then by similarity.
+     */
+    Flux<User> search(String query, int limit);
+
+    Mono<Boolean> existsByEmail(String email);
+
+    Flux<User> stream(int fetchSize);
+
+    Mono<List<BulkResultDTO>> bulk(List<BulkOperationDTO> operations);
+}
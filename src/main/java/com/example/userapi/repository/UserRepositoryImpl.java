@@ -1,56 +1,226 @@
 package com.example.userapi.repository;
 
+import com.example.userapi.dto.BulkOperationDTO;
+import com.example.userapi.dto.BulkResultDTO;
 import com.example.userapi.entity.User;
 import io.smallrye.mutiny.Uni;
+import jakarta.persistence.PersistenceException;
 import lombok.AllArgsConstructor;
+import org.hibernate.StaleStateException;
+import org.hibernate.exception.ConstraintViolationException;
 import org.hibernate.reactive.mutiny.Mutiny;
+import org.springframework.context.annotation.Profile;
+import org.springframework.http.HttpStatus;
 import org.springframework.stereotype.Repository;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
+import java.util.Collection;
+import java.util.List;
+import java.util.Objects;
+import java.util.Set;
+
+import static com.example.userapi.repository.Sessions.withStatelessSession;
+import static com.example.userapi.repository.Sessions.withStatelessTransaction;
+import static com.example.userapi.repository.Sessions.withTransaction;
+
+/**
+ * Reads run in a stateless session without a transaction, so a lookup is one statement in
+ * autocommit mode with no persistence context or snapshots. Only {@link #create} still uses a
+ * stateful session.
+ * <p>
+ * Writes and the email check before an insert go to the primary, other reads are routed by
+ * {@link ReplicaRouter}. Sessions are opened through {@link Sessions}.
+ */
 @Repository
+@Profile("!pgclient & !sharded")
 @AllArgsConstructor
 public class UserRepositoryImpl implements UserRepository {
 
+    private static final int BATCH_SIZE = 100;
+
+    /**
+     * Writes the row only if one of the columns actually changes and it still has the expected
+     * version, if any. Otherwise the second branch returns the row as it is, so an empty result
+     * means that there is no such user. See {@link ConditionalUpdate}.
+     */
+    private static final String UPDATE = """
+            WITH updated AS (
+                UPDATE users SET name = :name, email = :email, version = version + 1
+                WHERE id = :id AND (CAST(:version AS bigint) < 0 OR version = :version)
+                    AND (name IS DISTINCT FROM :name OR email IS DISTINCT FROM :email)
+                RETURNING id, name, email, version)
+            SELECT id, name, email, version FROM updated
+            UNION ALL
+            SELECT id, name, email, version FROM users WHERE id = :id AND NOT EXISTS (SELECT 1 FROM updated)""";
+
+    /**
+     * {@link #UPDATE} that keeps the columns bound to {@code null}. A row where nothing changes is
+     * not written at all. Otherwise the update is never HOT, since the search indexes cover both
+     * name and email, so it adds entries to every index on {@code users}, including
+     * {@code users_unique_email_idx} for an unchanged email.
+     */
+    private static final String PATCH = """
+            WITH updated AS (
+                UPDATE users SET name = COALESCE(:name, name), email = COALESCE(:email, email), version = version + 1
+                WHERE id = :id AND (CAST(:version AS bigint) < 0 OR version = :version)
+                    AND (name IS DISTINCT FROM COALESCE(:name, name) OR email IS DISTINCT FROM COALESCE(:email, email))
+                RETURNING id, name, email, version)
+            SELECT id, name, email, version FROM updated
+            UNION ALL
+            SELECT id, name, email, version FROM users WHERE id = :id AND NOT EXISTS (SELECT 1 FROM updated)""";
+
+    private static final String DELETE = "DELETE FROM users WHERE id = :id RETURNING id";
+
+    /**
+     * Takes the {@code limit} nearest names and the {@code limit} nearest emails by trigram word
+     * similarity, each walked in order from its GiST index, so the cost depends on the limit and
+     * not on the size of the table. Prefix matches are ranked first among them, and candidates
+     * with a word similarity below 0.3 are dropped.
+     */
+    private static final String SEARCH = """
+            SELECT id, name, email, version FROM (
+                (SELECT id, name, email, version, CAST(:query AS text) <<-> name AS distance
+                 FROM users ORDER BY CAST(:query AS text) <<-> name LIMIT :limit)
+                UNION ALL
+                (SELECT id, name, email, version, CAST(:query AS text) <<-> email AS distance
+                 FROM users ORDER BY CAST(:query AS text) <<-> email LIMIT :limit)) matches
+            WHERE distance < 0.7
+            GROUP BY id, name, email, version
+            ORDER BY bool_or(starts_with(lower(name), lower(:query)) OR starts_with(lower(email), lower(:query))) DESC,
+                min(distance), id
+            LIMIT :limit""";
+
+    private static final String EXISTS_BY_EMAIL = "SELECT 1 FROM users WHERE email = :email";
+
+    private static final String EXISTS_BY_ID = "SELECT 1 FROM users WHERE id = :id";
+
     private final Mutiny.SessionFactory sessionFactory;
+    private final ReplicaRouter replicaRouter;
 
     @Override
     public Mono<User> update(User user) {
-        return Mono.fromFuture(sessionFactory.withTransaction(session -> session.merge(user).call(session::flush))
-                .convert().toCompletableFuture());
+        return update(UPDATE, user);
     }
 
     @Override
-    public Mono<Boolean> delete(Long id) {
+    public Mono<User> patch(User user) {
+        return update(PATCH, user);
+    }
 
-        return Mono.fromFuture(sessionFactory.withTransaction(session -> session.createNamedQuery("delete")
-                .setParameter("id", id)
-                .executeUpdate()
-                .flatMap(i -> Uni.createFrom().item(Boolean.TRUE))
-        ).convert().toCompletableFuture());
+    private Mono<User> update(String sql, User user) {
+        return replicaRouter.write(withStatelessSession(sessionFactory, session -> session.createNativeQuery(sql, User.class)
+                        .setParameter("id", user.getId())
+                        .setParameter("name", user.getName())
+                        .setParameter("email", user.getEmail())
+                        .setParameter("version", ConditionalUpdate.expectedVersion(user))
+                        .getSingleResultOrNull())
+                .map(row -> ConditionalUpdate.verify(user, row)));
+    }
+
+    @Override
+    public Mono<Boolean> delete(Long id) {
+        return replicaRouter.write(withStatelessSession(sessionFactory, session -> session.createNativeQuery(DELETE, Long.class)
+                        .setParameter("id", id)
+                        .getSingleResultOrNull()
+                        .map(Objects::nonNull)));
     }
 
     @Override
     public Mono<User> create(User user) {
-        return Mono.fromFuture(sessionFactory.withTransaction(session -> session.merge(user).call(session::flush))
-                .convert().toCompletableFuture());
+        return replicaRouter.write(withTransaction(sessionFactory, session -> session.merge(user).call(session::flush)));
     }
 
     @Override
     public Mono<User> get(Long id) {
-        return Mono.fromFuture(sessionFactory.withTransaction((session -> session.find(User.class, id)))
-                .convert().toCompletableFuture());
+        return replicaRouter.read(factory -> withStatelessSession(factory, session -> session.get(User.class, id)));
+    }
+
+    @Override
+    public Flux<User> getAll(Long afterId, int limit) {
+        return replicaRouter.readMany(factory -> withStatelessSession(factory, session -> session.createQuery(
+                                "SELECT u FROM User u WHERE u.id > :afterId ORDER BY u.id", User.class)
+                        .setParameter("afterId", afterId)
+                        .setMaxResults(limit)
+                        .getResultList())
+                .flatMapIterable(users -> users));
+    }
+
+    @Override
+    public Flux<User> getAllById(Collection<Long> ids) {
+        if (ids.isEmpty()) return Flux.empty();
+        return replicaRouter.readMany(factory -> withStatelessSession(factory, session -> session.createQuery("SELECT u FROM User u WHERE u.id IN :ids", User.class)
+                        .setParameter("ids", ids)
+                        .getResultList())
+                .flatMapIterable(users -> users));
     }
 
     @Override
-    public Flux<User> getAll() {
-        return Mono.fromFuture(
-                sessionFactory.withTransaction(
-                        session -> session.createQuery("SELECT u FROM User u", User.class)
+    public Flux<User> search(String query, int limit) {
+        return replicaRouter.readMany(factory -> withStatelessSession(factory, session -> session.createNativeQuery(SEARCH, User.class)
+                        .setParameter("query", query)
+                        .setParameter("limit", limit)
                         .getResultList())
-                                .convert()
-                                .toCompletableFuture())
-                                        .flux()
-                                        .flatMap(Flux::fromIterable);
+                .flatMapIterable(users -> users));
+    }
+
+    @Override
+    public Mono<Boolean> existsByEmail(String email) {
+        return withStatelessSession(sessionFactory, session -> session.createNativeQuery(EXISTS_BY_EMAIL, Integer.class)
+                        .setParameter("email", email)
+                        .getSingleResultOrNull()
+                        .map(Objects::nonNull));
+    }
+
+    @Override
+    public Flux<User> stream(int fetchSize) {
+        return page(0L, fetchSize)
+                .expand(users -> users.size() < fetchSize ? Mono.empty() :
+                        page(users.get(users.size() - 1).getId(), fetchSize))
+                .concatMapIterable(users -> users, 1);
+    }
+
+    private Mono<List<User>> page(Long afterId, int limit) {
+        return Mono.defer(() -> getAll(afterId, limit).collectList());
+    }
+
+    @Override
+    public Mono<List<BulkResultDTO>> bulk(List<BulkOperationDTO> operations) {
+        return replicaRouter.write(bulkInTransaction(operations)
+                .onErrorResume(PersistenceException.class, e -> Flux.fromIterable(operations)
+                        .concatMap(operation -> bulkInTransaction(List.of(operation))
+                                .onErrorResume(ConstraintViolationException.class, ex -> Mono.just(List.of(
+                                        BulkPlan.reject(operation, HttpStatus.BAD_REQUEST, BulkResultDTO.NOT_UNIQUE_EMAIL))))
+                                .onErrorResume(StaleStateException.class, ex -> existsById(operation.getId())
+                                        .map(exists -> List.of(BulkPlan.stale(operation, exists)))))
+                        .flatMapIterable(results -> results)
+                        .collectList()));
+    }
+
+    private Mono<Boolean> existsById(Long id) {
+        return withStatelessSession(sessionFactory, session -> session.createNativeQuery(EXISTS_BY_ID, Integer.class)
+                .setParameter("id", id)
+                .getSingleResultOrNull()
+                .map(Objects::nonNull));
+    }
+
+    private Mono<List<BulkResultDTO>> bulkInTransaction(List<BulkOperationDTO> operations) {
+        Set<Long> ids = BulkPlan.ids(operations);
+        Set<String> emails = BulkPlan.emails(operations);
+        return withStatelessTransaction(sessionFactory, session ->
+                        findAll(session, "SELECT u FROM User u WHERE u.id IN :values", ids)
+                                .chain(users -> findAll(session, "SELECT u FROM User u WHERE u.email IN :values", emails)
+                                        .map(owners -> new BulkPlan(operations, users, owners)))
+                                .call(plan -> session.deleteAll(BATCH_SIZE, plan.getDeleted()))
+                                .call(plan -> session.updateAll(BATCH_SIZE, plan.getUpdated()))
+                                .call(plan -> session.insertAll(BATCH_SIZE, plan.getCreated()))
+                                .map(BulkPlan::getResults));
+    }
+
+    private static Uni<List<User>> findAll(Mutiny.StatelessSession session, String query, Collection<?> values) {
+        if (values.isEmpty()) return Uni.createFrom().item(List.of());
+        return session.createQuery(query, User.class)
+                .setParameter("values", values)
+                .getResultList();
     }
 }
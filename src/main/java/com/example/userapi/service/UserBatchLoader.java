@@ -0,0 +1,74 @@
+package com.example.userapi.service;
+
+import com.example.userapi.config.BatchingProperties;
+import com.example.userapi.entity.User;
+import com.example.userapi.repository.ReadYourWrites;
+import com.example.userapi.repository.UserRepository;
+import com.example.userapi.util.MicroBatcher;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Mono;
+
+
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * Collects single-user lookups arriving within {@code users.batching.window}, or until
+ * {@code users.batching.max-batch-size} of them are waiting, and resolves them with one
+ * {@code WHERE id IN (...)} query. Without {@code users.batching.enabled} lookups go straight
+ * to the repository. A batch with a lookup from a client pinned to the primary is read from the
+ * primary.
+ */
+@Component
+public class UserBatchLoader {
+
+    private final UserRepository userRepository;
+    private final ReadYourWrites readYourWrites;
+    private final MicroBatcher<Long, User> lookups;
+    private final DistributionSummary batchSize;
+    private final Counter lookupCount;
+    private final Counter queryCount;
+
+    public UserBatchLoader(BatchingProperties properties, UserRepository userRepository, ReadYourWrites readYourWrites,
+                           MeterRegistry meterRegistry) {
+        this.userRepository = userRepository;
+        this.readYourWrites = readYourWrites;
+        this.batchSize = DistributionSummary.builder("users.batch.size")
+                .baseUnit("ids")
+                .register(meterRegistry);
+        this.lookupCount = Counter.builder("users.batch.lookups").register(meterRegistry);
+        this.queryCount = Counter.builder("users.batch.queries").register(meterRegistry);
+        this.lookups = properties.isEnabled()
+                ? new MicroBatcher<>(properties.getMaxBatchSize(), properties.getWindow(), this::dispatch)
+                : null;
+    }
+
+    public Mono<User> get(Long id) {
+        if (lookups == null) return userRepository.get(id);
+        return lookups.submit(id);
+    }
+
+    private void dispatch(List<MicroBatcher.Request<Long, User>> batch) {
+        Set<Long> ids = batch.stream().map(MicroBatcher.Request::value).collect(Collectors.toSet());
+        batchSize.record(ids.size());
+        lookupCount.increment(batch.size());
+        queryCount.increment();
+        boolean primary = batch.stream().anyMatch(lookup -> readYourWrites.isPinned(lookup.sink().contextView()));
+        userRepository.getAllById(ids)
+                .contextWrite(context -> context.put(ReadYourWrites.PRIMARY, primary))
+                .collectMap(User::getId)
+                .subscribe(users -> batch.forEach(lookup -> complete(lookup, users)),
+                        e -> batch.forEach(lookup -> lookup.sink().error(e)));
+    }
+
+    private static void complete(MicroBatcher.Request<Long, User> lookup, Map<Long, User> users) {
+        User user = users.get(lookup.value());
+        if (user == null) lookup.sink().success();
+        else lookup.sink().success(user);
+    }
+}
@@ -0,0 +1,99 @@
+package com.example.userapi.service;
+
+import com.example.userapi.config.CreateBatchingProperties;
+import com.example.userapi.dto.BulkOperationDTO;
+import com.example.userapi.dto.BulkResultDTO;
+import com.example.userapi.entity.User;
+import com.example.userapi.metrics.RequestTimings;
+import com.example.userapi.repository.ReadYourWrites;
+import com.example.userapi.repository.UserRepository;
+import com.example.userapi.util.MicroBatcher;
+import com.example.userapi.util.UserUtils;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Component;
+import org.springframework.web.server.ResponseStatusException;
+import reactor.core.publisher.Mono;
+
+import java.util.List;
+
+/**
+ * Collects creates arriving within {@code users.create-batching.window}, or until
+ * {@code users.create-batching.max-batch-size} of them are waiting, and writes them in one
+ * transaction through {@link UserRepository#bulk}, which checks all emails with one query and
+ * inserts the rows as one JDBC-style batch. Every caller still gets its own user or its own
+ * duplicate-email error, its client is pinned by {@link ReadYourWrites} once the batch is written
+ * and the time of the whole batch is added to its {@link RequestTimings}. Without
+ * {@code users.create-batching.enabled} creates go straight to the repository.
+ */
+@Component
+public class UserCreateCoalescer {
+
+    private final UserRepository userRepository;
+    private final ReadYourWrites readYourWrites;
+    private final MicroBatcher<User, User> creates;
+    private final DistributionSummary batchSize;
+    private final Counter flushCount;
+
+    public UserCreateCoalescer(CreateBatchingProperties properties, UserRepository userRepository,
+                               ReadYourWrites readYourWrites, MeterRegistry meterRegistry) {
+        this.userRepository = userRepository;
+        this.readYourWrites = readYourWrites;
+        this.batchSize = DistributionSummary.builder("users.create.batch.size")
+                .baseUnit("users")
+                .register(meterRegistry);
+        this.flushCount = Counter.builder("users.create.batch.flushes").register(meterRegistry);
+        this.creates = properties.isEnabled()
+                ? new MicroBatcher<>(properties.getMaxBatchSize(), properties.getWindow(), this::dispatch)
+                : null;
+    }
+
+    public Mono<User> create(User user) {
+        if (creates == null) return userRepository.create(user);
+        return creates.submit(user);
+    }
+
+    private void dispatch(List<MicroBatcher.Request<User, User>> batch) {
+        batchSize.record(batch.size());
+        flushCount.increment();
+        List<BulkOperationDTO> operations = batch.stream()
+                .map(create -> BulkOperationDTO.builder()
+                        .op(BulkOperationDTO.Operation.CREATE)
+                        .name(create.value().getName())
+                        .email(create.value().getEmail())
+                        .build())
+                .toList();
+        long start = System.nanoTime();
+        userRepository.bulk(operations)
+                .subscribe(results -> {
+                            long nanos = System.nanoTime() - start;
+                            for (int i = 0; i < batch.size(); i++) complete(batch.get(i), results.get(i), nanos);
+                        },
+                        e -> {
+                            long nanos = System.nanoTime() - start;
+                            batch.forEach(create -> {
+                                record(create, nanos);
+                                create.sink().error(e);
+                            });
+                        });
+    }
+
+    private void complete(MicroBatcher.Request<User, User> create, BulkResultDTO result, long nanos) {
+        record(create, nanos);
+        if (result.getStatus() == HttpStatus.OK.value()) {
+            User user = create.value();
+            readYourWrites.pin(create.context());
+            create.sink().success(new User(result.getId(), user.getName(), user.getEmail(), 0L));
+        } else if (BulkResultDTO.NOT_UNIQUE_EMAIL.equals(result.getMessage())) {
+            create.sink().error(UserUtils.notUniqueEmail());
+        } else {
+            create.sink().error(new ResponseStatusException(HttpStatus.valueOf(result.getStatus()), result.getMessage()));
+        }
+    }
+
+    private static void record(MicroBatcher.Request<User, User> create, long nanos) {
+        RequestTimings.from(create.context()).ifPresent(timings -> timings.record("repository", "bulk", nanos));
+    }
+}
@@ -0,0 +1,121 @@
+package com.example.userapi.service;
+
+import com.example.userapi.config.BloomFilterProperties;
+import com.example.userapi.entity.User;
+import com.example.userapi.repository.UserRepository;
+import com.google.common.hash.BloomFilter;
+import com.google.common.hash.Funnels;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Mono;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Locale;
+import java.util.function.Function;
+
+/**
+ * In-process Bloom filters over the ids and normalized emails of all users. A filter can only
+ * prove that a value is absent, so ids it rejects are answered without a query, while emails it
+ * accepts are the only ones worth checking for duplicates before an insert.
+ * <p>
+ * Deleted users stay in the filters until the next rebuild, and users written through other
+ * instances appear only after it, so the filters are off unless {@code users.bloom-filter.enabled} is set.
+ */
+@Slf4j
+@Component
+public class UserExistenceFilter {
+
+    private static final int REBUILD_FETCH_SIZE = 1000;
+
+    private final BloomFilterProperties properties;
+    private final UserRepository userRepository;
+    private final Counter idNegatives;
+    private final Counter emailNegatives;
+
+    private volatile Filters filters;
+    private volatile Filters building;
+
+    public UserExistenceFilter(BloomFilterProperties properties, UserRepository userRepository, MeterRegistry meterRegistry) {
+        this.properties = properties;
+        this.userRepository = userRepository;
+        this.idNegatives = Counter.builder("users.bloom.filter.negatives").tag("filter", "ids").register(meterRegistry);
+        this.emailNegatives = Counter.builder("users.bloom.filter.negatives").tag("filter", "emails").register(meterRegistry);
+        gauges(meterRegistry, "ids", Filters::ids);
+        gauges(meterRegistry, "emails", Filters::emails);
+    }
+
+    public boolean isIdAbsent(Long id) {
+        Filters current = filters;
+        if (current == null || current.ids().mightContain(id)) return false;
+        idNegatives.increment();
+        return true;
+    }
+
+    public boolean isEmailPossiblyTaken(String email) {
+        Filters current = filters;
+        if (current == null) return false;
+        if (current.emails().mightContain(normalize(email))) return true;
+        emailNegatives.increment();
+        return false;
+    }
+
+    public void add(User user) {
+        Filters current = filters;
+        if (current != null) current.put(user);
+        Filters next = building;
+        if (next != null) next.put(user);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    @Scheduled(initialDelayString = "${users.bloom-filter.rebuild-interval:PT1H}",
+            fixedDelayString = "${users.bloom-filter.rebuild-interval:PT1H}")
+    public void scheduleRebuild() {
+        if (!properties.isEnabled() || building != null) return;
+        rebuild().subscribe(null, e -> log.error("Failed to rebuild user filters", e));
+    }
+
+    Mono<Void> rebuild() {
+        Filters next = new Filters(
+                BloomFilter.create(Funnels.longFunnel(), properties.getExpectedInsertions(), properties.getFalsePositiveProbability()),
+                BloomFilter.create(Funnels.stringFunnel(StandardCharsets.UTF_8), properties.getExpectedInsertions(), properties.getFalsePositiveProbability()));
+        building = next;
+        return userRepository.stream(REBUILD_FETCH_SIZE)
+                .doOnNext(next::put)
+                .then(Mono.fromRunnable(() -> {
+                    filters = next;
+                    log.info("Rebuilt user filters with about {} users", next.ids().approximateElementCount());
+                }))
+                .doFinally(s -> building = null)
+                .then();
+    }
+
+    private void gauges(MeterRegistry meterRegistry, String name, Function<Filters, BloomFilter<?>> filter) {
+        Gauge.builder("users.bloom.filter.expected.insertions", properties, BloomFilterProperties::getExpectedInsertions)
+                .tag("filter", name)
+                .register(meterRegistry);
+        Gauge.builder("users.bloom.filter.elements", this, f -> f.filters == null ? 0 : filter.apply(f.filters).approximateElementCount())
+                .tag("filter", name)
+                .register(meterRegistry);
+        Gauge.builder("users.bloom.filter.fpp", this, f -> f.filters == null ? 0 : filter.apply(f.filters).expectedFpp())
+                .tag("filter", name)
+                .register(meterRegistry);
+    }
+
+    private static String normalize(String email) {
+        return email.trim().toLowerCase(Locale.ROOT);
+    }
+
+    private record Filters(BloomFilter<Long> ids, BloomFilter<CharSequence> emails) {
+
+        void put(User user) {
+            ids.put(user.getId());
+            emails.put(normalize(user.getEmail()));
+        }
+    }
+}
@@ -0,0 +1,46 @@
+package com.example.userapi.service;
+
+import com.example.userapi.entity.User;
+import com.example.userapi.util.SingleFlight;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.List;
+import java.util.function.Supplier;
+
+/**
+ * Collapses concurrent identical reads into one repository call, so that a burst of requests for
+ * a popular user or page costs one query instead of one per request.
+ */
+@Component
+public class UserRequestCoalescer {
+
+    private final SingleFlight<Long, User> gets;
+    private final SingleFlight<Page, List<User>> pages;
+
+    public UserRequestCoalescer(MeterRegistry meterRegistry) {
+        gets = new SingleFlight<>(coalesced(meterRegistry, "get"));
+        pages = new SingleFlight<>(coalesced(meterRegistry, "getAll"));
+    }
+
+    public Mono<User> get(Long id, Supplier<Mono<User>> call) {
+        return gets.execute(id, call);
+    }
+
+    public Flux<User> getAll(Long afterId, int limit, Supplier<Flux<User>> call) {
+        return pages.execute(new Page(afterId, limit), () -> call.get().collectList())
+                .flatMapIterable(users -> users);
+    }
+
+    private static Counter coalesced(MeterRegistry meterRegistry, String operation) {
+        return Counter.builder("users.requests.coalesced")
+                .tag("operation", operation)
+                .register(meterRegistry);
+    }
+
+    private record Page(Long afterId, int limit) {
+    }
+}
@@ -1,47 +1,129 @@
 package com.example.userapi.service;
 
+import com.example.userapi.dto.BulkOperationDTO;
+import com.example.userapi.dto.BulkResultDTO;
 import com.example.userapi.dto.UserRequestDTO;
 import com.example.userapi.entity.User;
+import com.example.userapi.repository.ReadYourWrites;
 import com.example.userapi.repository.UserRepository;
 import com.example.userapi.util.UserUtils;
 import lombok.AllArgsConstructor;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
 import org.springframework.cache.annotation.CacheEvict;
 import org.springframework.cache.annotation.CachePut;
-import org.springframework.cache.annotation.Cacheable;
+import org.springframework.http.HttpStatus;
 import org.springframework.stereotype.Service;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
+import reactor.util.context.Context;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.Objects;
 
 @Service
 @AllArgsConstructor
 public class UserService {
 
+    public static final String USERS_CACHE = "users";
+
+    private static final int EXPORT_FETCH_SIZE = 500;
+    private static final int BULK_CHUNK_SIZE = 500;
+
     private final UserRepository userRepository;
+    private final UserExistenceFilter userExistenceFilter;
+    private final CacheManager cacheManager;
+    private final UserRequestCoalescer userRequestCoalescer;
+    private final UserBatchLoader userBatchLoader;
+    private final UserCreateCoalescer userCreateCoalescer;
+    private final ReadYourWrites readYourWrites;
 
+    /**
+     * Reads through the users cache, which is only ever filled from the primary: a user read from a
+     * replica could be up to {@code users.db.replicas.max-lag} old and would stay cached for the
+     * whole TTL. A client pinned by {@link ReadYourWrites} skips the cache, since it may hold a
+     * user from before the client's own write, and refreshes it instead.
+     */
     public Mono<User> get(Long id) {
-        return userRepository.get(id);
+        if (userExistenceFilter.isIdAbsent(id)) return Mono.empty();
+        return Mono.deferContextual(context -> {
+            Cache cache = usersCache();
+            if (readYourWrites.isPinned(context)) return userBatchLoader.get(id).doOnNext(user -> cache.put(id, user));
+            return Mono.fromFuture(() -> cache.retrieve(id, () -> userRequestCoalescer.get(id, () -> userBatchLoader.get(id))
+                    .contextWrite(Context.of(context).put(ReadYourWrites.PRIMARY, true))
+                    .toFuture()), true);
+        });
     }
 
+    @CachePut(cacheNames = USERS_CACHE, key = "#result.id", unless = "#result == null")
     public Mono<User> create(UserRequestDTO userRequestDTO) {
-        return userRepository.create(UserUtils.toUser(userRequestDTO));
+        User user = UserUtils.toUser(userRequestDTO);
+        if (userExistenceFilter.isEmailPossiblyTaken(user.getEmail())) {
+            return userRepository.existsByEmail(user.getEmail())
+                    .flatMap(exists -> exists ? Mono.error(UserUtils.notUniqueEmail()) : insert(user));
+        }
+        return insert(user);
     }
 
+    @CachePut(cacheNames = USERS_CACHE, key = "#user.id", unless = "#result == null")
     public Mono<User> update(User user) {
-        return userRepository.get(user.getId())
-                .flatMap(dbUser -> {
-                    if (dbUser.getName().equals(user.getName()) && dbUser.getEmail().equals(user.getEmail())) return Mono.just(dbUser);
-                    dbUser.setName(user.getName());
-                    dbUser.setEmail(user.getEmail());
-                    return userRepository.update(dbUser);
-                }).switchIfEmpty(Mono.defer(Mono::empty));
+        return userRepository.update(user).doOnNext(userExistenceFilter::add);
+    }
+
+    @CachePut(cacheNames = USERS_CACHE, key = "#user.id", unless = "#result == null")
+    public Mono<User> patch(User user) {
+        return userRepository.patch(user).doOnNext(userExistenceFilter::add);
     }
 
+    @CacheEvict(cacheNames = USERS_CACHE)
     public Mono<Boolean> delete(Long id) {
-        return userRepository.get(id).flatMap(u -> userRepository.delete(id)).switchIfEmpty(Mono.just(false));
+        return userRepository.delete(id);
+    }
+
+    public Flux<User> getAll(Long afterId, int limit) {
+        return Flux.deferContextual(context -> readYourWrites.isPinned(context) ? userRepository.getAll(afterId, limit) :
+                userRequestCoalescer.getAll(afterId, limit, () -> userRepository.getAll(afterId, limit)));
+    }
+
+    public Flux<User> getAllById(List<Long> ids) {
+        return userRepository.getAllById(new HashSet<>(ids))
+                .collectMap(User::getId)
+                .flatMapIterable(users -> ids.stream().distinct().map(users::get).filter(Objects::nonNull).toList());
+    }
+
+    public Flux<User> search(String query, int limit) {
+        return userRepository.search(query, limit);
+    }
+
+    public Flux<User> export() {
+        return userRepository.stream(EXPORT_FETCH_SIZE);
+    }
+
+    public Flux<BulkResultDTO> bulk(Flux<BulkOperationDTO> operations) {
+        return operations.buffer(BULK_CHUNK_SIZE)
+                .index()
+                .concatMap(chunk -> userRepository.bulk(chunk.getT2())
+                        .flatMapIterable(results -> {
+                            Cache cache = usersCache();
+                            for (int i = 0; i < results.size(); i++) {
+                                BulkOperationDTO operation = chunk.getT2().get(i);
+                                BulkResultDTO result = results.get(i);
+                                result.setIndex(chunk.getT1() * BULK_CHUNK_SIZE + i);
+                                if (result.getStatus() != HttpStatus.OK.value()) continue;
+                                cache.evict(result.getId());
+                                if (operation.getOp() != BulkOperationDTO.Operation.DELETE)
+                                    userExistenceFilter.add(new User(result.getId(), operation.getName(), operation.getEmail()));
+                            }
+                            return results;
+                        }));
+    }
 
+    private Cache usersCache() {
+        return Objects.requireNonNull(cacheManager.getCache(USERS_CACHE));
     }
 
-    public Flux<User> getAll() {
-        return userRepository.getAll();
+    private Mono<User> insert(User user) {
+        return userCreateCoalescer.create(user).doOnNext(userExistenceFilter::add);
     }
 }
@@ -0,0 +1,58 @@
+package com.example.userapi.util;
+
+import lombok.extern.slf4j.Slf4j;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.MonoSink;
+import reactor.core.publisher.Sinks;
+import reactor.util.context.ContextView;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * Collects requests arriving within a window, or until a maximum number of them are waiting, and
+ * hands them to a dispatcher as one batch. The dispatcher completes the sink of every request. If
+ * it throws instead, the requests of that batch fail and the following batches are dispatched as
+ * usual. The batch runs outside the callers' subscriptions, so each request carries the Reactor
+ * context of its caller for whatever the dispatcher has to do on its behalf.
+ */
+@Slf4j
+public class MicroBatcher<T, R> {
+
+    private final Sinks.Many<Request<T, R>> requests = Sinks.many().unicast().onBackpressureBuffer();
+    private final Consumer<List<Request<T, R>>> dispatcher;
+
+    public MicroBatcher(int maxBatchSize, Duration window, Consumer<List<Request<T, R>>> dispatcher) {
+        this.dispatcher = dispatcher;
+        requests.asFlux()
+                .bufferTimeout(maxBatchSize, window)
+                .subscribe(this::dispatch, e -> log.error("Micro-batching stopped", e));
+    }
+
+    public Mono<R> submit(T value) {
+        return Mono.create(sink -> {
+            Sinks.EmitResult result;
+            synchronized (requests) {
+                result = requests.tryEmitNext(new Request<>(value, sink));
+            }
+            if (result.isFailure()) sink.error(new IllegalStateException("Could not queue the request: " + result));
+        });
+    }
+
+    private void dispatch(List<Request<T, R>> batch) {
+        try {
+            dispatcher.accept(batch);
+        } catch (RuntimeException e) {
+            log.error("Failed to dispatch a batch of {} requests", batch.size(), e);
+            batch.forEach(request -> request.sink().error(e));
+        }
+    }
+
+    public record Request<T, R>(T value, MonoSink<R> sink) {
+
+        public ContextView context() {
+            return sink.contextView();
+        }
+    }
+}
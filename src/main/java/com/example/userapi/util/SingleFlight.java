@@ -0,0 +1,39 @@
+package com.example.userapi.util;
+
+import io.micrometer.core.instrument.Counter;
+import reactor.core.publisher.Mono;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Supplier;
+
+/**
+ * Lets concurrent subscribers asking for the same key share one call. The call is forgotten as
+ * soon as it terminates, so results are never served after the fact, only joined while in flight.
+ */
+public class SingleFlight<K, V> {
+
+    private final Map<K, Mono<V>> inFlight = new ConcurrentHashMap<>();
+    private final Counter coalesced;
+
+    public SingleFlight(Counter coalesced) {
+        this.coalesced = coalesced;
+    }
+
+    public Mono<V> execute(K key, Supplier<? extends Mono<V>> call) {
+        return Mono.defer(() -> {
+            boolean[] leader = {false};
+            Mono<V> shared = inFlight.computeIfAbsent(key, k -> {
+                leader[0] = true;
+                AtomicReference<Mono<V>> self = new AtomicReference<>();
+                self.set(Mono.defer(call)
+                        .doFinally(s -> inFlight.remove(k, self.get()))
+                        .cache());
+                return self.get();
+            });
+            if (!leader[0]) coalesced.increment();
+            return shared;
+        });
+    }
+}
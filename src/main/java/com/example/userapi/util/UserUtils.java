@@ -2,9 +2,66 @@ package com.example.userapi.util;
 
 import com.example.userapi.dto.UserRequestDTO;
 import com.example.userapi.entity.User;
+import com.google.common.hash.Hasher;
+import com.google.common.hash.Hashing;
+import org.hibernate.StaleObjectStateException;
+import org.hibernate.exception.ConstraintViolationException;
+
+import java.nio.ByteBuffer;
+import java.util.Base64;
+import java.util.List;
 
 public class UserUtils {
     public static User toUser(UserRequestDTO userRequestDTO) {
         return new User(userRequestDTO.getName(), userRequestDTO.getEmail());
     }
+
+    public static ConstraintViolationException notUniqueEmail() {
+        return new ConstraintViolationException("Not unique email", null, "users_unique_email_idx");
+    }
+
+    public static String encodeCursor(Long id) {
+        return Base64.getUrlEncoder().withoutPadding()
+                .encodeToString(ByteBuffer.allocate(Long.BYTES).putLong(id).array());
+    }
+
+    public static Long decodeCursor(String cursor) {
+        if (cursor == null) return 0L;
+        byte[] bytes = Base64.getUrlDecoder().decode(cursor);
+        if (bytes.length != Long.BYTES) throw new IllegalArgumentException("Invalid cursor");
+        return ByteBuffer.wrap(bytes).getLong();
+    }
+
+    public static StaleObjectStateException versionMismatch(Long id) {
+        return new StaleObjectStateException(User.class.getName(), id);
+    }
+
+    /**
+     * Strong ETag of a user: its row version, which changes with every write.
+     */
+    public static String eTag(User user) {
+        return "\"" + user.getVersion() + "\"";
+    }
+
+    /**
+     * Expected version from an {@code If-Match} ETag, {@code null} for {@code *}.
+     *
+     * @throws IllegalArgumentException if the value is not an ETag of {@link #eTag(User)}
+     */
+    public static Long parseETag(String eTag) {
+        String value = eTag.trim();
+        if (value.equals("*")) return null;
+        if (value.length() < 3 || value.charAt(0) != '"' || value.charAt(value.length() - 1) != '"')
+            throw new IllegalArgumentException("Invalid ETag");
+        return Long.parseLong(value.substring(1, value.length() - 1));
+    }
+
+    /**
+     * Strong ETag over the id and version of every user on a page and whether a next page follows.
+     */
+    public static String eTag(List<User> users, boolean hasNext) {
+        Hasher hasher = Hashing.murmur3_128().newHasher().putBoolean(hasNext).putInt(users.size());
+        users.forEach(user -> hasher.putLong(user.getId()).putLong(user.getVersion() == null ? -1 : user.getVersion()));
+        return '"' + Base64.getUrlEncoder().withoutPadding().encodeToString(hasher.hash().asBytes()) + '"';
+    }
 }
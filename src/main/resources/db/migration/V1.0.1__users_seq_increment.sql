@@ -0,0 +1 @@
+alter sequence users_seq increment by 50;
@@ -0,0 +1,5 @@
+create table user_emails (
+    email varchar(255) not null,
+    user_id bigint not null,
+    primary key (email));
+insert into user_emails (email, user_id) select email, id from users;
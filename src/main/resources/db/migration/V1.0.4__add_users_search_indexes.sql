@@ -0,0 +1,3 @@
+create extension if not exists pg_trgm;
+create index if not exists users_name_trgm_idx on users using gist (name gist_trgm_ops);
+create index if not exists users_email_trgm_idx on users using gist (email gist_trgm_ops);
@@ -0,0 +1,158 @@
+package com.example.userapi;
+
+import com.example.userapi.dto.UserRequestDTO;
+import com.example.userapi.entity.User;
+import com.example.userapi.filter.ClientKeyFilter;
+import com.example.userapi.filter.ServerTimingFilter;
+import com.example.userapi.service.UserService;
+import org.flywaydb.core.Flyway;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.reactive.AutoConfigureWebTestClient;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.cache.CacheManager;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.springframework.test.web.reactive.server.WebTestClient;
+import org.testcontainers.containers.PostgreSQLContainer;
+import org.testcontainers.junit.jupiter.Testcontainers;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.time.Duration;
+import java.util.List;
+import java.util.Objects;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Same setup as {@link ReplicaIntegrationTests}, with creates going through the create batching,
+ * which writes outside the request that submitted them, and {@code Server-Timing} enabled.
+ */
+@SpringBootTest(properties = {
+        "users.db.replicas.lag-check-interval=100ms",
+        "users.db.replicas.pin-duration=1h",
+        "users.create-batching.enabled=true",
+        "users.server-timing.enabled=true"})
+@AutoConfigureWebTestClient
+@ActiveProfiles("test")
+@Testcontainers
+class ReplicaCreateBatchingIntegrationTests {
+
+    private static final Duration TIMEOUT = Duration.ofSeconds(10);
+
+    private static final PostgreSQLContainer<?> replica = new PostgreSQLContainer<>("postgres:latest")
+            .withDatabaseName("userapi_db_replica")
+            .withUsername("user")
+            .withPassword("passwd");
+
+    static {
+        replica.start();
+    }
+
+    @DynamicPropertySource
+    static void replicaProperties(DynamicPropertyRegistry registry) {
+        registry.add("users.db.replicas.urls", () -> "jdbc:postgresql://localhost:" + replica.getFirstMappedPort()
+                + "/userapi_db_replica");
+        registry.add("users.db.replicas.user", replica::getUsername);
+        registry.add("users.db.replicas.password", replica::getPassword);
+    }
+
+    @Autowired
+    private WebTestClient webClient;
+
+    @Autowired
+    private Flyway flyway;
+
+    @Autowired
+    private CacheManager cacheManager;
+
+    private final Flyway replicaFlyway = Flyway.configure().cleanDisabled(false)
+            .dataSource(replica.getJdbcUrl(), replica.getUsername(), replica.getPassword())
+            .load();
+
+    @BeforeEach
+    void setUp() {
+        flyway.clean();
+        flyway.migrate();
+        replicaFlyway.clean();
+        replicaFlyway.migrate();
+        Objects.requireNonNull(cacheManager.getCache(UserService.USERS_CACHE)).clear();
+    }
+
+    @Test
+    public void batchedCreatePinsItsClient() throws Exception {
+        insertIntoReplica(new User(1000L, "Stale", "stale@ya.ru", 0L));
+        awaitPage("reader", "Stale");
+
+        webClient.post().uri("/users")
+                .header(ClientKeyFilter.CLIENT_ID_HEADER, "ivan")
+                .bodyValue(new UserRequestDTO("Ivan", "ivan@ya.ru"))
+                .exchange()
+                .expectStatus().isOk()
+                .expectHeader().value(ServerTimingFilter.SERVER_TIMING_HEADER, timing -> assertThat(timing)
+                        .contains("repository;dur=", "desc=\"bulk\""));
+        webClient.post().uri("/users")
+                .header(ClientKeyFilter.CLIENT_ID_HEADER, "petr")
+                .bodyValue(new UserRequestDTO("Petr", "petr@ya.ru"))
+                .exchange()
+                .expectStatus().isOk();
+
+        assertThat(page("ivan")).extracting(User::getName).containsExactly("Ivan", "Petr");
+        assertThat(page("petr")).extracting(User::getName).containsExactly("Ivan", "Petr");
+        assertThat(page("reader")).extracting(User::getName).containsExactly("Stale");
+    }
+
+    @Test
+    public void replicaReadTimed() throws Exception {
+        insertIntoReplica(new User(1000L, "Stale", "stale@ya.ru", 0L));
+        awaitPage("reader", "Stale");
+
+        webClient.get().uri("/users/{id}", 1000L)
+                .header(ClientKeyFilter.CLIENT_ID_HEADER, "reader")
+                .exchange()
+                .expectStatus().isOk()
+                .expectHeader().value(ServerTimingFilter.SERVER_TIMING_HEADER, timing -> assertThat(timing)
+                        .contains("queue;dur=")
+                        .contains("sql;dur="));
+    }
+
+    private List<User> page(String client) {
+        return webClient.get().uri("/users")
+                .header(ClientKeyFilter.CLIENT_ID_HEADER, client)
+                .exchange()
+                .expectStatus().isOk()
+                .expectBodyList(User.class)
+                .returnResult()
+                .getResponseBody();
+    }
+
+    /**
+     * Waits for the lag probe to mark the replica healthy, so that the page of {@code client}
+     * holds a user named {@code name}.
+     */
+    private void awaitPage(String client, String name) throws InterruptedException {
+        long deadline = System.nanoTime() + TIMEOUT.toNanos();
+        while (true) {
+            List<User> users = page(client);
+            if (users != null && users.stream().anyMatch(user -> name.equals(user.getName()))) return;
+            assertThat(System.nanoTime()).as("page of %s with %s", client, name).isLessThan(deadline);
+            Thread.sleep(100);
+        }
+    }
+
+    private static void insertIntoReplica(User user) throws SQLException {
+        try (Connection connection = DriverManager.getConnection(replica.getJdbcUrl(), replica.getUsername(), replica.getPassword());
+             PreparedStatement insert = connection.prepareStatement("INSERT INTO users (id, name, email, version) VALUES (?, ?, ?, ?)")) {
+            insert.setLong(1, user.getId());
+            insert.setString(2, user.getName());
+            insert.setString(3, user.getEmail());
+            insert.setLong(4, user.getVersion());
+            insert.executeUpdate();
+        }
+    }
+}
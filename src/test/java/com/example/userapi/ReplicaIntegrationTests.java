@@ -0,0 +1,226 @@
+package com.example.userapi;
+
+import com.example.userapi.dto.UserRequestDTO;
+import com.example.userapi.entity.User;
+import com.example.userapi.filter.ClientKeyFilter;
+import com.example.userapi.service.UserService;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.flywaydb.core.Flyway;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.MethodOrderer;
+import org.junit.jupiter.api.Order;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestMethodOrder;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.reactive.AutoConfigureWebTestClient;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.springframework.test.web.reactive.server.WebTestClient;
+import org.testcontainers.containers.PostgreSQLContainer;
+import org.testcontainers.junit.jupiter.Testcontainers;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.time.Duration;
+import java.util.List;
+import java.util.Objects;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Runs the default repository against two databases: the test database as primary and a second
+ * container as its only replica. The replica does not replicate anything, so rows written straight
+ * into it stand for a replica that has not caught up yet, and every read that returns them was
+ * served by the replica.
+ */
+@SpringBootTest(properties = {
+        "users.db.replicas.lag-check-interval=100ms",
+        "users.db.replicas.pin-duration=1h"})
+@AutoConfigureWebTestClient
+@ActiveProfiles("test")
+@Testcontainers
+@TestMethodOrder(MethodOrderer.OrderAnnotation.class)
+class ReplicaIntegrationTests {
+
+    private static final Duration TIMEOUT = Duration.ofSeconds(10);
+
+    private static final PostgreSQLContainer<?> replica = new PostgreSQLContainer<>("postgres:latest")
+            .withDatabaseName("userapi_db_replica")
+            .withUsername("user")
+            .withPassword("passwd");
+
+    static {
+        replica.start();
+    }
+
+    @DynamicPropertySource
+    static void replicaProperties(DynamicPropertyRegistry registry) {
+        registry.add("users.db.replicas.urls", () -> "jdbc:postgresql://localhost:" + replica.getFirstMappedPort()
+                + "/userapi_db_replica");
+        registry.add("users.db.replicas.user", replica::getUsername);
+        registry.add("users.db.replicas.password", replica::getPassword);
+    }
+
+    @Autowired
+    private WebTestClient webClient;
+
+    @Autowired
+    private Flyway flyway;
+
+    @Autowired
+    private CacheManager cacheManager;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    private final Flyway replicaFlyway = Flyway.configure().cleanDisabled(false)
+            .dataSource(replica.getJdbcUrl(), replica.getUsername(), replica.getPassword())
+            .load();
+
+    @BeforeEach
+    void setUp() {
+        flyway.clean();
+        flyway.migrate();
+        if (replica.isRunning()) {
+            replicaFlyway.clean();
+            replicaFlyway.migrate();
+        }
+        usersCache().clear();
+    }
+
+    @Test
+    @Order(1)
+    public void readYourWrites() throws Exception {
+        User user = create("writer", "Ivan", "ivan@ya.ru");
+        insertIntoReplica(new User(user.getId(), "Stale", "ivan@ya.ru", 0L));
+
+        awaitPage("reader", "Stale");
+        assertThat(page("writer")).extracting(User::getName).containsExactly("Ivan");
+
+        usersCache().clear();
+        getName("reader", user.getId(), "Ivan");
+        assertThat(usersCache().get(user.getId(), User.class)).extracting(User::getName).isEqualTo("Ivan");
+
+        usersCache().put(user.getId(), new User(user.getId(), "Cached", "ivan@ya.ru", 0L));
+        getName("writer", user.getId(), "Ivan");
+        getName("reader", user.getId(), "Ivan");
+    }
+
+    @Test
+    @Order(2)
+    public void deleteIsNotHiddenByReplicaRead() throws Exception {
+        User user = create("writer", "Ivan", "ivan@ya.ru");
+        insertIntoReplica(new User(user.getId(), "Stale", "ivan@ya.ru", 0L));
+        awaitPage("reader", "Stale");
+
+        webClient.delete().uri("/users/{id}", user.getId())
+                .header(ClientKeyFilter.CLIENT_ID_HEADER, "writer")
+                .exchange()
+                .expectStatus().isOk();
+
+        webClient.get().uri("/users/{id}", user.getId())
+                .header(ClientKeyFilter.CLIENT_ID_HEADER, "reader")
+                .exchange()
+                .expectStatus().isNotFound();
+        assertThat(usersCache().get(user.getId())).isNull();
+
+        webClient.get().uri("/users/{id}", user.getId())
+                .header(ClientKeyFilter.CLIENT_ID_HEADER, "writer")
+                .exchange()
+                .expectStatus().isNotFound();
+    }
+
+    @Test
+    @Order(3)
+    public void replicaPoolIsMeteredSeparately() throws Exception {
+        insertIntoReplica(new User(1000L, "Stale", "stale@ya.ru", 0L));
+        awaitPage("reader", "Stale");
+
+        for (String pool : List.of("primary", "replica-0")) {
+            assertThat(meterRegistry.get("users.db.pool.max").tag("pool", pool).gauge().value()).as(pool).isPositive();
+            assertThat(meterRegistry.get("users.db.pool.size").tag("pool", pool).gauge().value()).as(pool).isPositive();
+        }
+    }
+
+    /**
+     * Stops the replica, so it runs last.
+     */
+    @Test
+    @Order(4)
+    public void fallBackToPrimaryWhenReplicaFails() throws Exception {
+        User user = create("writer", "Ivan", "ivan@ya.ru");
+        insertIntoReplica(new User(user.getId(), "Stale", "ivan@ya.ru", 0L));
+        awaitPage("reader", "Stale");
+
+        replica.stop();
+
+        awaitPage("reader", "Ivan");
+    }
+
+    private User create(String client, String name, String email) {
+        User user = webClient.post().uri("/users")
+                .header(ClientKeyFilter.CLIENT_ID_HEADER, client)
+                .bodyValue(new UserRequestDTO(name, email))
+                .exchange()
+                .expectStatus().isOk()
+                .returnResult(User.class)
+                .getResponseBody()
+                .blockFirst();
+        assertThat(user).isNotNull();
+        return user;
+    }
+
+    private void getName(String client, Long id, String name) {
+        webClient.get().uri("/users/{id}", id)
+                .header(ClientKeyFilter.CLIENT_ID_HEADER, client)
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody()
+                .jsonPath("$.name").isEqualTo(name);
+    }
+
+    private List<User> page(String client) {
+        return webClient.get().uri("/users")
+                .header(ClientKeyFilter.CLIENT_ID_HEADER, client)
+                .exchange()
+                .expectStatus().isOk()
+                .expectBodyList(User.class)
+                .returnResult()
+                .getResponseBody();
+    }
+
+    /**
+     * Waits for the lag probe to mark the replica healthy or failed, whichever makes the page of
+     * {@code client} hold a user named {@code name}.
+     */
+    private void awaitPage(String client, String name) throws InterruptedException {
+        long deadline = System.nanoTime() + TIMEOUT.toNanos();
+        while (true) {
+            List<User> users = page(client);
+            if (users != null && users.stream().anyMatch(user -> name.equals(user.getName()))) return;
+            assertThat(System.nanoTime()).as("page of %s with %s", client, name).isLessThan(deadline);
+            Thread.sleep(100);
+        }
+    }
+
+    private static void insertIntoReplica(User user) throws SQLException {
+        try (Connection connection = DriverManager.getConnection(replica.getJdbcUrl(), replica.getUsername(), replica.getPassword());
+             PreparedStatement insert = connection.prepareStatement("INSERT INTO users (id, name, email, version) VALUES (?, ?, ?, ?)")) {
+            insert.setLong(1, user.getId());
+            insert.setString(2, user.getName());
+            insert.setString(3, user.getEmail());
+            insert.setLong(4, user.getVersion());
+            insert.executeUpdate();
+        }
+    }
+
+    private Cache usersCache() {
+        return Objects.requireNonNull(cacheManager.getCache(UserService.USERS_CACHE));
+    }
+}
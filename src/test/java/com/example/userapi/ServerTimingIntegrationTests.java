@@ -0,0 +1,65 @@
+package com.example.userapi;
+
+import com.example.userapi.dto.UserRequestDTO;
+import com.example.userapi.entity.User;
+import com.example.userapi.filter.ServerTimingFilter;
+import com.example.userapi.service.UserService;
+import org.flywaydb.core.Flyway;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.reactive.AutoConfigureWebTestClient;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.web.reactive.server.WebTestClient;
+import org.testcontainers.junit.jupiter.Testcontainers;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@SpringBootTest(properties = "users.server-timing.enabled=true")
+@AutoConfigureWebTestClient
+@ActiveProfiles("test")
+@Testcontainers
+class ServerTimingIntegrationTests {
+
+    @Autowired
+    private UserService userService;
+
+    @Autowired
+    private WebTestClient webClient;
+
+    @Autowired
+    private Flyway flyway;
+
+    @BeforeEach
+    void setUp() {
+        flyway.clean();
+        flyway.migrate();
+    }
+
+    @Test
+    public void updateTimed() {
+        assertThat(updateTiming())
+                .contains("queue;dur=")
+                .contains("sql;dur=")
+                .contains("repository;dur=", "desc=\"update\"")
+                .contains("encode;dur=")
+                .contains("total;dur=");
+    }
+
+    protected String updateTiming() {
+        User user = userService.create(UserRequestDTO.builder()
+                .name("Ivan")
+                .email("ivan@ya.ru")
+                .build()).block();
+        assertThat(user).isNotNull();
+
+        return webClient.put().uri("/users")
+                .bodyValue(new User(user.getId(), "Petr", "petr@ya.ru"))
+                .exchange()
+                .expectStatus().isOk()
+                .returnResult(User.class)
+                .getResponseHeaders()
+                .getFirst(ServerTimingFilter.SERVER_TIMING_HEADER);
+    }
+}
@@ -0,0 +1,24 @@
+package com.example.userapi;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.test.context.ActiveProfiles;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Runs {@link ServerTimingIntegrationTests} against the raw PG client repository. The Vert.x pool
+ * takes the connection inside each statement, so there is no separate {@code queue} phase.
+ */
+@ActiveProfiles("pgclient")
+class ServerTimingPgClientIntegrationTests extends ServerTimingIntegrationTests {
+
+    @Test
+    @Override
+    public void updateTimed() {
+        assertThat(updateTiming())
+                .contains("sql;dur=")
+                .contains("repository;dur=", "desc=\"update\"")
+                .contains("encode;dur=")
+                .contains("total;dur=");
+    }
+}
@@ -0,0 +1,78 @@
+package com.example.userapi;
+
+import com.example.userapi.dto.UserRequestDTO;
+import com.example.userapi.entity.User;
+import com.example.userapi.metrics.SqlStatementLog;
+import com.example.userapi.service.UserService;
+import org.flywaydb.core.Flyway;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.reactive.AutoConfigureWebTestClient;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.cache.CacheManager;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.web.reactive.server.WebTestClient;
+import org.testcontainers.junit.jupiter.Testcontainers;
+
+import java.util.Objects;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@SpringBootTest(properties = "users.sql-log.slow-threshold=0ms")
+@AutoConfigureWebTestClient
+@ActiveProfiles("test")
+@Testcontainers
+class SlowQueriesIntegrationTests {
+
+    @Autowired
+    private UserService userService;
+
+    @Autowired
+    private WebTestClient webClient;
+
+    @Autowired
+    private Flyway flyway;
+
+    @Autowired
+    private CacheManager cacheManager;
+
+    @Autowired
+    private SqlStatementLog sqlStatementLog;
+
+    @BeforeEach
+    void setUp() {
+        flyway.clean();
+        flyway.migrate();
+        sqlStatementLog.clear();
+    }
+
+    @Test
+    public void slowQueriesOk() {
+        User user = userService.create(UserRequestDTO.builder()
+                .name("Ivan")
+                .email("ivan@ya.ru")
+                .build()).block();
+        assertThat(user).isNotNull();
+        Objects.requireNonNull(cacheManager.getCache(UserService.USERS_CACHE)).clear();
+
+        webClient.get().uri("/users/{id}", user.getId())
+                .exchange()
+                .expectStatus().isOk();
+
+        webClient.get().uri("/actuator/slowqueries")
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody()
+                .jsonPath("$[0].sql").value(sql -> assertThat((String) sql).containsIgnoringCase("from users"))
+                .jsonPath("$[0].binds").isEqualTo(1)
+                .jsonPath("$[0].rows").isEqualTo(1);
+    }
+
+    @Test
+    public void slowQueriesReadOnly() {
+        webClient.delete().uri("/actuator/slowqueries")
+                .exchange()
+                .expectStatus().is4xxClientError();
+    }
+}
@@ -0,0 +1,31 @@
+package com.example.userapi;
+
+import com.example.userapi.config.SqlLogProperties;
+import com.example.userapi.metrics.SqlStatementLog;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class SqlStatementLogTests {
+
+    @Test
+    public void sampledStatementsDoNotSkipSlowSlots() {
+        SqlLogProperties properties = new SqlLogProperties();
+        properties.setSlowThreshold(Duration.ofMillis(10));
+        properties.setSampleRate(1.0);
+        properties.setSlowQueriesSize(4);
+        try (SqlStatementLog statementLog = new SqlStatementLog(properties, new SimpleMeterRegistry())) {
+            for (int i = 0; i < 6; i++) {
+                statementLog.record("slow " + i, 0, Duration.ofMillis(20).toNanos(), 1, null);
+                statementLog.record("fast " + i, 0, Duration.ofMillis(1).toNanos(), 1, null);
+            }
+
+            assertThat(statementLog.slowQueries())
+                    .extracting(SqlStatementLog.Entry::sql)
+                    .containsExactly("slow 5", "slow 4", "slow 3", "slow 2");
+        }
+    }
+}
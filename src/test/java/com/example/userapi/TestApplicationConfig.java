@@ -1,6 +1,11 @@
 package com.example.userapi;
 
 import com.example.userapi.config.AppConfig;
+import com.example.userapi.config.PgPoolProperties;
+import com.example.userapi.metrics.SqlStatementLog;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.vertx.pgclient.PgConnectOptions;
+import io.vertx.sqlclient.Pool;
 import org.flywaydb.core.Flyway;
 import org.hibernate.reactive.mutiny.Mutiny;
 import org.springframework.context.annotation.Bean;
@@ -15,7 +20,7 @@ import static jakarta.persistence.Persistence.createEntityManagerFactory;
 
 @Configuration
 @Profile("test")
-public class TestApplicationConfig extends AppConfig {
+public class TestApplicationConfig {
 
     @Bean
     public PostgreSQLContainer<?> postgresContainer(){
@@ -28,15 +33,29 @@ public class TestApplicationConfig extends AppConfig {
     }
 
     @Bean
-    Mutiny.SessionFactory getMutinySessionFactoryTest(PostgreSQLContainer<?> postgresContainer){
+    Mutiny.SessionFactory getMutinySessionFactoryTest(PostgreSQLContainer<?> postgresContainer,
+                                                      PgPoolProperties poolProperties, MeterRegistry meterRegistry,
+                                                      SqlStatementLog statementLog){
 
-        Map<String, String> prop = new HashMap<>();
+        Map<String, Object> prop = new HashMap<>(poolProperties.toSettings());
         prop.put("jakarta.persistence.jdbc.url", "jdbc:postgresql://localhost:" + postgresContainer.getFirstMappedPort() + "/userapi_db_test");
         prop.put("jakarta.persistence.jdbc.user", "user");
         prop.put("jakarta.persistence.jdbc.password", "passwd");
-        prop.put("hibernate.show_sql", "true");
 
-        return createEntityManagerFactory("dbSettingsTest", prop).unwrap(Mutiny.SessionFactory.class);
+        return AppConfig.sessionFactory(createEntityManagerFactory("dbSettingsTest", prop), "primary",
+                meterRegistry, statementLog);
+    }
+
+    @Bean(destroyMethod = "close")
+    @Profile("pgclient")
+    Pool getPgPoolTest(PostgreSQLContainer<?> postgresContainer, PgPoolProperties poolProperties) {
+        PgConnectOptions connectOptions = new PgConnectOptions()
+                .setPort(postgresContainer.getFirstMappedPort())
+                .setHost("localhost")
+                .setDatabase("userapi_db_test")
+                .setUser("user")
+                .setPassword("passwd");
+        return Pool.pool(poolProperties.applyTo(connectOptions), poolProperties.toPoolOptions());
     }
 
     @Bean
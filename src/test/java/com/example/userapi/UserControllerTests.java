@@ -1,5 +1,8 @@
 package com.example.userapi;
 
+import com.example.userapi.controller.UserController;
+import com.example.userapi.dto.BulkOperationDTO;
+import com.example.userapi.dto.BulkResultDTO;
 import com.example.userapi.dto.UserRequestDTO;
 import com.example.userapi.entity.User;
 import com.example.userapi.service.UserService;
@@ -19,6 +22,7 @@ import reactor.core.publisher.Mono;
 
 import java.util.List;
 
+import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.Mockito.when;
 
@@ -201,7 +205,7 @@ class UserControllerTests {
 
         List<User> users = List.of(user, user_1);
 
-        when(userService.getAll()).thenReturn(Flux.fromIterable(users));
+        when(userService.getAll(0L, 101)).thenReturn(Flux.fromIterable(users));
 
         String jsonObj = objectMapper.writeValueAsString(users);
 
@@ -209,7 +213,146 @@ class UserControllerTests {
                 .exchange()
                 .expectStatus().isOk()
                 .expectHeader().contentType(MediaType.APPLICATION_JSON)
+                .expectHeader().doesNotExist(UserController.NEXT_CURSOR_HEADER)
                 .expectBody()
                 .json(jsonObj);
     }
+
+    @Test
+    public void getAllNextPage() throws Exception {
+        User user = User.builder()
+                .id(1L)
+                .name("Ivan")
+                .email("ivan@ya.ru")
+                .build();
+
+        User user_1 = User.builder()
+                .id(2L)
+                .name("Petr")
+                .email("petr@ya.ru")
+                .build();
+
+        when(userService.getAll(0L, 2)).thenReturn(Flux.just(user, user_1));
+        when(userService.getAll(1L, 2)).thenReturn(Flux.just(user_1));
+
+        String cursor = webClient.get().uri("/users?limit=1")
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody()
+                .json(objectMapper.writeValueAsString(List.of(user)))
+                .returnResult()
+                .getResponseHeaders()
+                .getFirst(UserController.NEXT_CURSOR_HEADER);
+
+        assertEquals(UserUtils.encodeCursor(1L), cursor);
+
+        webClient.get().uri("/users?limit=1&after={after}", cursor)
+                .exchange()
+                .expectStatus().isOk()
+                .expectHeader().doesNotExist(UserController.NEXT_CURSOR_HEADER)
+                .expectBody()
+                .json(objectMapper.writeValueAsString(List.of(user_1)));
+    }
+
+    @Test
+    public void getAllBadRequest() throws Exception {
+        webClient.get().uri("/users?after=broken")
+                .exchange()
+                .expectStatus().isBadRequest();
+
+        webClient.get().uri("/users?limit=0")
+                .exchange()
+                .expectStatus().isBadRequest();
+    }
+
+    @Test
+    public void exportOk() throws Exception {
+        User user = User.builder()
+                .id(1L)
+                .name("Ivan")
+                .email("ivan@ya.ru")
+                .build();
+
+        User user_1 = User.builder()
+                .id(2L)
+                .name("Petr")
+                .email("petr@ya.ru")
+                .build();
+
+        when(userService.export()).thenReturn(Flux.just(user, user_1));
+
+        webClient.get().uri("/users/export")
+                .accept(MediaType.APPLICATION_NDJSON)
+                .exchange()
+                .expectStatus().isOk()
+                .expectHeader().contentType(MediaType.APPLICATION_NDJSON)
+                .expectBodyList(User.class)
+                .isEqualTo(List.of(user, user_1));
+    }
+
+    @Test
+    public void bulkOk() throws Exception {
+        BulkResultDTO created = BulkResultDTO.builder()
+                .index(0)
+                .op(BulkOperationDTO.Operation.CREATE)
+                .status(200)
+                .id(1L)
+                .build();
+
+        BulkResultDTO notFound = BulkResultDTO.builder()
+                .index(1)
+                .op(BulkOperationDTO.Operation.DELETE)
+                .status(404)
+                .id(4L)
+                .message("User not found")
+                .build();
+
+        when(userService.bulk(any())).thenReturn(Flux.just(created, notFound));
+
+        String body = objectMapper.writeValueAsString(BulkOperationDTO.builder()
+                .op(BulkOperationDTO.Operation.CREATE)
+                .name("Ivan")
+                .email("ivan@ya.ru")
+                .build()) + "\n" + objectMapper.writeValueAsString(BulkOperationDTO.builder()
+                .op(BulkOperationDTO.Operation.DELETE)
+                .id(4L)
+                .build());
+
+        webClient.post().uri("/users/_bulk")
+                .contentType(MediaType.APPLICATION_NDJSON)
+                .accept(MediaType.APPLICATION_NDJSON)
+                .bodyValue(body)
+                .exchange()
+                .expectStatus().isOk()
+                .expectHeader().contentType(MediaType.APPLICATION_NDJSON)
+                .expectBody(String.class)
+                .isEqualTo("""
+                        {"index":0,"op":"create","status":200,"id":1}
+                        {"index":1,"op":"delete","status":404,"id":4,"message":"User not found"}
+                        """);
+    }
+
+    @Test
+    public void getAllByIdOk() throws Exception {
+        User user = User.builder()
+                .id(1L)
+                .name("Ivan")
+                .email("ivan@ya.ru")
+                .build();
+
+        User user_1 = User.builder()
+                .id(2L)
+                .name("Petr")
+                .email("petr@ya.ru")
+                .build();
+
+        when(userService.getAllById(List.of(2L, 1L))).thenReturn(Flux.just(user_1, user));
+
+        webClient.get().uri("/users?ids=2,1")
+                .exchange()
+                .expectStatus().isOk()
+                .expectHeader().contentType(MediaType.APPLICATION_JSON)
+                .expectBody()
+                .json(objectMapper.writeValueAsString(List.of(user_1, user)));
+    }
 }
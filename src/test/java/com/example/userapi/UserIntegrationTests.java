@@ -1,5 +1,8 @@
 package com.example.userapi;
 
+import com.example.userapi.controller.UserController;
+import com.example.userapi.dto.BulkOperationDTO;
+import com.example.userapi.dto.BulkResultDTO;
 import com.example.userapi.dto.UserRequestDTO;
 import com.example.userapi.entity.User;
 import com.example.userapi.service.UserService;
@@ -10,12 +13,18 @@ import org.junit.jupiter.api.*;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.reactive.AutoConfigureWebTestClient;
 import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.cache.caffeine.CaffeineCache;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.test.context.ActiveProfiles;
 import org.springframework.test.web.reactive.server.WebTestClient;
 import org.testcontainers.junit.jupiter.Testcontainers;
 
 import java.util.List;
+import java.util.Objects;
 
 import static org.assertj.core.api.Assertions.assertThat;
 
@@ -36,10 +45,22 @@ class UserIntegrationTests {
     @Autowired
     private Flyway flyway;
 
+    @Autowired
+    private CacheManager cacheManager;
+
     @BeforeEach
     void setUp() {
         flyway.clean();
         flyway.migrate();
+        usersCache().clear();
+    }
+
+    private Cache usersCache() {
+        return Objects.requireNonNull(cacheManager.getCache(UserService.USERS_CACHE));
+    }
+
+    private long cacheHits() {
+        return ((CaffeineCache) usersCache()).getNativeCache().stats().hitCount();
     }
 
     @Test
@@ -158,6 +179,29 @@ class UserIntegrationTests {
                 .json(jsonObj);
     }
 
+    @Test
+    public void updateUnchanged() throws Exception {
+        UserRequestDTO userRequestDTO = UserRequestDTO.builder()
+                .name("Ivan")
+                .email("ivan@ya.ru")
+                .build();
+
+        User user = userService.create(userRequestDTO).block();
+        assertThat(user).isNotNull();
+
+        String jsonObj = objectMapper.writeValueAsString(user);
+
+        webClient.put().uri("/users")
+                .contentType(MediaType.APPLICATION_JSON)
+                .accept(MediaType.APPLICATION_JSON)
+                .bodyValue(user)
+                .exchange()
+                .expectStatus().isOk()
+                .expectHeader().contentType(MediaType.APPLICATION_JSON)
+                .expectBody()
+                .json(jsonObj);
+    }
+
     @Test
     public void updateNotFound() throws Exception {
         UserRequestDTO userRequestDTO = UserRequestDTO.builder()
@@ -257,4 +301,459 @@ class UserIntegrationTests {
                 .expectBody()
                 .json(jsonObj);
     }
+
+    @Test
+    public void getAllPaged() throws Exception {
+        UserRequestDTO userRequestDTO = UserRequestDTO.builder()
+                .name("Ivan")
+                .email("ivan@ya.ru")
+                .build();
+
+        UserRequestDTO userRequestDTO_1 = UserRequestDTO.builder()
+                .name("Petr")
+                .email("petr@ya.ru")
+                .build();
+
+        User user = userService.create(userRequestDTO).block();
+        User user_1 = userService.create(userRequestDTO_1).block();
+        assertThat(user).isNotNull();
+        assertThat(user_1).isNotNull();
+
+        String cursor = webClient.get().uri("/users?limit=1")
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody()
+                .json(objectMapper.writeValueAsString(List.of(user)))
+                .returnResult()
+                .getResponseHeaders()
+                .getFirst(UserController.NEXT_CURSOR_HEADER);
+
+        assertThat(cursor).isNotNull();
+
+        webClient.get().uri("/users?limit=1&after={after}", cursor)
+                .exchange()
+                .expectStatus().isOk()
+                .expectHeader().doesNotExist(UserController.NEXT_CURSOR_HEADER)
+                .expectBody()
+                .json(objectMapper.writeValueAsString(List.of(user_1)));
+    }
+
+    @Test
+    public void exportOk() throws Exception {
+        UserRequestDTO userRequestDTO = UserRequestDTO.builder()
+                .name("Ivan")
+                .email("ivan@ya.ru")
+                .build();
+
+        UserRequestDTO userRequestDTO_1 = UserRequestDTO.builder()
+                .name("Petr")
+                .email("petr@ya.ru")
+                .build();
+
+        User user = userService.create(userRequestDTO).block();
+        User user_1 = userService.create(userRequestDTO_1).block();
+        assertThat(user).isNotNull();
+        assertThat(user_1).isNotNull();
+
+        webClient.get().uri("/users/export")
+                .accept(MediaType.APPLICATION_NDJSON)
+                .exchange()
+                .expectStatus().isOk()
+                .expectHeader().contentType(MediaType.APPLICATION_NDJSON)
+                .expectBodyList(User.class)
+                .isEqualTo(List.of(user, user_1));
+    }
+
+    @Test
+    public void bulkOk() throws Exception {
+        UserRequestDTO userRequestDTO = UserRequestDTO.builder()
+                .name("Ivan")
+                .email("ivan@ya.ru")
+                .build();
+
+        User user = userService.create(userRequestDTO).block();
+        assertThat(user).isNotNull();
+
+        List<BulkOperationDTO> operations = List.of(
+                BulkOperationDTO.builder().op(BulkOperationDTO.Operation.CREATE).name("Petr").email("petr@ya.ru").build(),
+                BulkOperationDTO.builder().op(BulkOperationDTO.Operation.CREATE).name("Ivanov").email("ivan@ya.ru").build(),
+                BulkOperationDTO.builder().op(BulkOperationDTO.Operation.UPDATE).id(user.getId()).name("Ivan").email("ivan@gmail.com").build(),
+                BulkOperationDTO.builder().op(BulkOperationDTO.Operation.CREATE).name("Ivanov").email("ivan@ya.ru").build(),
+                BulkOperationDTO.builder().op(BulkOperationDTO.Operation.DELETE).id(1000L).build());
+
+        StringBuilder body = new StringBuilder();
+        for (BulkOperationDTO operation : operations) body.append(objectMapper.writeValueAsString(operation)).append('\n');
+
+        List<BulkResultDTO> results = webClient.post().uri("/users/_bulk")
+                .contentType(MediaType.APPLICATION_NDJSON)
+                .accept(MediaType.APPLICATION_NDJSON)
+                .bodyValue(body.toString())
+                .exchange()
+                .expectStatus().isOk()
+                .expectBodyList(BulkResultDTO.class)
+                .returnResult()
+                .getResponseBody();
+
+        assertThat(results).isNotNull();
+        assertThat(results).extracting(BulkResultDTO::getStatus).containsExactly(200, 400, 200, 200, 404);
+        assertThat(results).extracting(BulkResultDTO::getMessage)
+                .containsExactly(null, "Not unique email", null, null, "User not found");
+
+        webClient.get().uri("/users/{id}", user.getId())
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody()
+                .jsonPath("$.email").isEqualTo("ivan@gmail.com");
+
+        webClient.get().uri("/users/{id}", results.get(3).getId())
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody()
+                .jsonPath("$.email").isEqualTo("ivan@ya.ru");
+    }
+
+    @Test
+    public void getAllByIdOk() throws Exception {
+        UserRequestDTO userRequestDTO = UserRequestDTO.builder()
+                .name("Ivan")
+                .email("ivan@ya.ru")
+                .build();
+
+        UserRequestDTO userRequestDTO_1 = UserRequestDTO.builder()
+                .name("Petr")
+                .email("petr@ya.ru")
+                .build();
+
+        User user = userService.create(userRequestDTO).block();
+        User user_1 = userService.create(userRequestDTO_1).block();
+        assertThat(user).isNotNull();
+        assertThat(user_1).isNotNull();
+
+        webClient.get().uri("/users?ids={ids}", user_1.getId() + ",1000," + user.getId())
+                .exchange()
+                .expectStatus().isOk()
+                .expectHeader().contentType(MediaType.APPLICATION_JSON)
+                .expectBody()
+                .json(objectMapper.writeValueAsString(List.of(user_1, user)));
+    }
+
+    @Test
+    public void prometheusOk() throws Exception {
+        webClient.get().uri("/users/{id}", 1000)
+                .exchange()
+                .expectStatus().isNotFound();
+
+        webClient.get().uri("/actuator/prometheus")
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody(String.class)
+                .value(body -> assertThat(body)
+                        .contains("users_repository_seconds_bucket{method=\"get\",outcome=\"empty\"")
+                        .contains("http_server_requests_seconds_bucket"));
+    }
+
+    @Test
+    public void getNotModified() throws Exception {
+        UserRequestDTO userRequestDTO = UserRequestDTO.builder()
+                .name("Ivan")
+                .email("ivan@ya.ru")
+                .build();
+
+        User user = userService.create(userRequestDTO).block();
+        assertThat(user).isNotNull();
+
+        String eTag = webClient.get().uri("/users/{id}", user.getId())
+                .exchange()
+                .expectStatus().isOk()
+                .returnResult(User.class)
+                .getResponseHeaders().getETag();
+        assertThat(eTag).isNotNull();
+
+        webClient.get().uri("/users/{id}", user.getId())
+                .ifNoneMatch(eTag)
+                .exchange()
+                .expectStatus().isNotModified()
+                .expectBody().isEmpty();
+
+        userService.update(new User(user.getId(), "Petr", "ivan@ya.ru")).block();
+
+        webClient.get().uri("/users/{id}", user.getId())
+                .ifNoneMatch(eTag)
+                .exchange()
+                .expectStatus().isOk()
+                .expectHeader().value(HttpHeaders.ETAG, newETag -> assertThat(newETag).isNotEqualTo(eTag));
+    }
+
+    @Test
+    public void getAllNotModified() throws Exception {
+        UserRequestDTO userRequestDTO = UserRequestDTO.builder()
+                .name("Ivan")
+                .email("ivan@ya.ru")
+                .build();
+
+        assertThat(userService.create(userRequestDTO).block()).isNotNull();
+
+        String eTag = webClient.get().uri("/users")
+                .exchange()
+                .expectStatus().isOk()
+                .returnResult(User.class)
+                .getResponseHeaders().getETag();
+        assertThat(eTag).isNotNull();
+
+        webClient.get().uri("/users")
+                .ifNoneMatch(eTag)
+                .exchange()
+                .expectStatus().isNotModified()
+                .expectBody().isEmpty();
+
+        UserRequestDTO userRequestDTO_1 = UserRequestDTO.builder()
+                .name("Petr")
+                .email("petr@ya.ru")
+                .build();
+
+        assertThat(userService.create(userRequestDTO_1).block()).isNotNull();
+
+        webClient.get().uri("/users")
+                .ifNoneMatch(eTag)
+                .exchange()
+                .expectStatus().isOk();
+    }
+
+    @Test
+    public void updateIfMatch() throws Exception {
+        UserRequestDTO userRequestDTO = UserRequestDTO.builder()
+                .name("Ivan")
+                .email("ivan@ya.ru")
+                .build();
+
+        User user = userService.create(userRequestDTO).block();
+        assertThat(user).isNotNull();
+
+        String eTag = webClient.get().uri("/users/{id}", user.getId())
+                .exchange()
+                .expectStatus().isOk()
+                .returnResult(User.class)
+                .getResponseHeaders().getETag();
+        assertThat(eTag).isNotNull();
+
+        webClient.put().uri("/users")
+                .header(HttpHeaders.IF_MATCH, eTag)
+                .bodyValue(new User(user.getId(), "Petr", "ivan@ya.ru"))
+                .exchange()
+                .expectStatus().isOk()
+                .expectHeader().value(HttpHeaders.ETAG, newETag -> assertThat(newETag).isNotEqualTo(eTag))
+                .expectBody()
+                .jsonPath("$.name").isEqualTo("Petr")
+                .jsonPath("$.version").isEqualTo(user.getVersion() + 1);
+
+        webClient.put().uri("/users")
+                .header(HttpHeaders.IF_MATCH, eTag)
+                .bodyValue(new User(user.getId(), "Ivanov", "ivan@ya.ru"))
+                .exchange()
+                .expectStatus().isEqualTo(HttpStatus.PRECONDITION_FAILED)
+                .expectBody()
+                .jsonPath("$.message").isEqualTo("Version mismatch");
+
+        webClient.put().uri("/users")
+                .bodyValue(new User(user.getId(), "Ivanov", "ivan@ya.ru", user.getVersion()))
+                .exchange()
+                .expectStatus().isEqualTo(HttpStatus.PRECONDITION_FAILED);
+
+        webClient.get().uri("/users/{id}", user.getId())
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody()
+                .jsonPath("$.name").isEqualTo("Petr");
+    }
+
+    @Test
+    public void patch() throws Exception {
+        UserRequestDTO userRequestDTO = UserRequestDTO.builder()
+                .name("Ivan")
+                .email("ivan@ya.ru")
+                .build();
+
+        User user = userService.create(userRequestDTO).block();
+        assertThat(user).isNotNull();
+
+        webClient.patch().uri("/users/{id}", user.getId())
+                .bodyValue(UserRequestDTO.builder().name("Petr").build())
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody()
+                .jsonPath("$.name").isEqualTo("Petr")
+                .jsonPath("$.email").isEqualTo("ivan@ya.ru")
+                .jsonPath("$.version").isEqualTo(user.getVersion() + 1);
+
+        webClient.patch().uri("/users/{id}", user.getId())
+                .header(HttpHeaders.IF_MATCH, UserUtils.eTag(user))
+                .bodyValue(UserRequestDTO.builder().email("petr@ya.ru").build())
+                .exchange()
+                .expectStatus().isEqualTo(HttpStatus.PRECONDITION_FAILED);
+
+        webClient.patch().uri("/users/{id}", user.getId())
+                .bodyValue(UserRequestDTO.builder().email("petr@ya.ru").build())
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody()
+                .jsonPath("$.name").isEqualTo("Petr")
+                .jsonPath("$.email").isEqualTo("petr@ya.ru");
+
+        webClient.patch().uri("/users/{id}", user.getId() + 1000)
+                .bodyValue(UserRequestDTO.builder().name("Petr").build())
+                .exchange()
+                .expectStatus().isNotFound();
+    }
+
+    @Test
+    public void search() throws Exception {
+        userService.create(new UserRequestDTO("Ivan", "ivan@ya.ru")).block();
+        userService.create(new UserRequestDTO("Petr", "petr@ya.ru")).block();
+        userService.create(new UserRequestDTO("Ivanna", "anna@gmail.com")).block();
+
+        webClient.get().uri(uri -> uri.path("/users/search").queryParam("q", "iva").build())
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody()
+                .jsonPath("$.length()").isEqualTo(2)
+                .jsonPath("$[0].name").isEqualTo("Ivan")
+                .jsonPath("$[1].name").isEqualTo("Ivanna");
+
+        webClient.get().uri(uri -> uri.path("/users/search").queryParam("q", "petrr").build())
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody()
+                .jsonPath("$[0].email").isEqualTo("petr@ya.ru");
+
+        webClient.get().uri(uri -> uri.path("/users/search").queryParam("q", "iva").queryParam("limit", 1).build())
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody()
+                .jsonPath("$.length()").isEqualTo(1);
+
+        webClient.get().uri(uri -> uri.path("/users/search").queryParam("q", " ").build())
+                .exchange()
+                .expectStatus().isBadRequest();
+    }
+
+    @Test
+    public void getCached() throws Exception {
+        User user = userService.create(new UserRequestDTO("Ivan", "ivan@ya.ru")).block();
+        assertThat(user).isNotNull();
+        usersCache().clear();
+
+        long hits = cacheHits();
+        webClient.get().uri("/users/{id}", user.getId())
+                .exchange()
+                .expectStatus().isOk();
+        assertThat(cacheHits()).isEqualTo(hits);
+        assertThat(usersCache().get(user.getId(), User.class)).isEqualTo(user);
+
+        webClient.get().uri("/users/{id}", user.getId())
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody()
+                .jsonPath("$.name").isEqualTo("Ivan");
+        assertThat(cacheHits()).isEqualTo(hits + 1);
+    }
+
+    @Test
+    public void writesPutIntoCache() throws Exception {
+        User user = userService.create(new UserRequestDTO("Ivan", "ivan@ya.ru")).block();
+        assertThat(user).isNotNull();
+        assertThat(usersCache().get(user.getId(), User.class)).extracting(User::getName).isEqualTo("Ivan");
+
+        webClient.put().uri("/users")
+                .bodyValue(new User(user.getId(), "Petr", "ivan@ya.ru"))
+                .exchange()
+                .expectStatus().isOk();
+        assertThat(usersCache().get(user.getId(), User.class)).extracting(User::getName).isEqualTo("Petr");
+
+        webClient.patch().uri("/users/{id}", user.getId())
+                .bodyValue(UserRequestDTO.builder().email("petr@ya.ru").build())
+                .exchange()
+                .expectStatus().isOk();
+        assertThat(usersCache().get(user.getId(), User.class)).extracting(User::getEmail).isEqualTo("petr@ya.ru");
+    }
+
+    @Test
+    public void deleteEvictsFromCache() throws Exception {
+        User user = userService.create(new UserRequestDTO("Ivan", "ivan@ya.ru")).block();
+        assertThat(user).isNotNull();
+        assertThat(usersCache().get(user.getId())).isNotNull();
+
+        webClient.delete().uri("/users/{id}", user.getId())
+                .exchange()
+                .expectStatus().isOk();
+        assertThat(usersCache().get(user.getId())).isNull();
+
+        webClient.get().uri("/users/{id}", user.getId())
+                .exchange()
+                .expectStatus().isNotFound();
+    }
+
+    @Test
+    public void bulkEvictsFromCache() throws Exception {
+        User updated = userService.create(new UserRequestDTO("Ivan", "ivan@ya.ru")).block();
+        User deleted = userService.create(new UserRequestDTO("Petr", "petr@ya.ru")).block();
+        assertThat(updated).isNotNull();
+        assertThat(deleted).isNotNull();
+        assertThat(usersCache().get(updated.getId())).isNotNull();
+        assertThat(usersCache().get(deleted.getId())).isNotNull();
+
+        List<BulkOperationDTO> operations = List.of(
+                BulkOperationDTO.builder().op(BulkOperationDTO.Operation.UPDATE).id(updated.getId()).name("Ivanov").email("ivan@ya.ru").build(),
+                BulkOperationDTO.builder().op(BulkOperationDTO.Operation.DELETE).id(deleted.getId()).build());
+        StringBuilder body = new StringBuilder();
+        for (BulkOperationDTO operation : operations) body.append(objectMapper.writeValueAsString(operation)).append('\n');
+
+        webClient.post().uri("/users/_bulk")
+                .contentType(MediaType.APPLICATION_NDJSON)
+                .accept(MediaType.APPLICATION_NDJSON)
+                .bodyValue(body.toString())
+                .exchange()
+                .expectStatus().isOk();
+        assertThat(usersCache().get(updated.getId())).isNull();
+        assertThat(usersCache().get(deleted.getId())).isNull();
+
+        webClient.get().uri("/users/{id}", updated.getId())
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody()
+                .jsonPath("$.name").isEqualTo("Ivanov");
+        webClient.get().uri("/users/{id}", deleted.getId())
+                .exchange()
+                .expectStatus().isNotFound();
+    }
+
+    @Test
+    public void missIsNotCached() throws Exception {
+        User user = userService.create(new UserRequestDTO("Ivan", "ivan@ya.ru")).block();
+        assertThat(user).isNotNull();
+        Long missing = user.getId() + 1;
+
+        webClient.get().uri("/users/{id}", missing)
+                .exchange()
+                .expectStatus().isNotFound();
+        assertThat(usersCache().get(missing)).isNull();
+
+        BulkOperationDTO create = BulkOperationDTO.builder().op(BulkOperationDTO.Operation.CREATE).name("Petr").email("petr@ya.ru").build();
+        List<BulkResultDTO> results = webClient.post().uri("/users/_bulk")
+                .contentType(MediaType.APPLICATION_NDJSON)
+                .accept(MediaType.APPLICATION_NDJSON)
+                .bodyValue(objectMapper.writeValueAsString(create) + '\n')
+                .exchange()
+                .expectStatus().isOk()
+                .expectBodyList(BulkResultDTO.class)
+                .returnResult()
+                .getResponseBody();
+        assertThat(results).isNotNull();
+        assertThat(results).extracting(BulkResultDTO::getId).containsExactly(missing);
+
+        webClient.get().uri("/users/{id}", missing)
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody()
+                .jsonPath("$.name").isEqualTo("Petr");
+    }
 }
@@ -0,0 +1,10 @@
+package com.example.userapi;
+
+import org.springframework.test.context.ActiveProfiles;
+
+/**
+ * Runs every {@link UserIntegrationTests} case against the raw PG client repository.
+ */
+@ActiveProfiles("pgclient")
+class UserPgClientIntegrationTests extends UserIntegrationTests {
+}
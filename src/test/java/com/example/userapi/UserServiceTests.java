@@ -1,23 +1,42 @@
 package com.example.userapi;
 
+import com.example.userapi.config.BatchingProperties;
+import com.example.userapi.config.CreateBatchingProperties;
+import com.example.userapi.dto.BulkOperationDTO;
+import com.example.userapi.dto.BulkResultDTO;
 import com.example.userapi.dto.UserRequestDTO;
 import com.example.userapi.entity.User;
+import com.example.userapi.repository.ReadYourWrites;
 import com.example.userapi.repository.UserRepository;
+import com.example.userapi.service.UserBatchLoader;
+import com.example.userapi.service.UserCreateCoalescer;
+import com.example.userapi.service.UserExistenceFilter;
 import com.example.userapi.service.UserService;
 import com.example.userapi.util.UserUtils;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.hibernate.exception.ConstraintViolationException;
+import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.cache.CacheManager;
 import org.springframework.dao.DuplicateKeyException;
 import org.springframework.test.context.ActiveProfiles;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+import reactor.util.context.Context;
 
+import java.time.Duration;
 import java.util.List;
+import java.util.Objects;
+import java.util.Set;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyLong;
 import static org.mockito.Mockito.*;
 import static org.mockito.Mockito.times;
 
@@ -31,6 +50,20 @@ class UserServiceTests {
     @MockBean
     private UserRepository userRepository;
 
+    @MockBean
+    private UserExistenceFilter userExistenceFilter;
+
+    @Autowired
+    private ReadYourWrites readYourWrites;
+
+    @Autowired
+    private CacheManager cacheManager;
+
+    @BeforeEach
+    void setUp() {
+        Objects.requireNonNull(cacheManager.getCache(UserService.USERS_CACHE)).clear();
+    }
+
     @Test
     public void getOk() throws Exception {
         User user = User.builder()
@@ -44,13 +77,29 @@ class UserServiceTests {
         when(userRepository.get(1L)).thenReturn(monoUser);
 
         assertEquals(user, userService.get(1L).block());
+        assertEquals(user, userService.get(1L).block());
+        verify(userRepository, times(1)).get(1L);
     }
 
     @Test
     public void getNotFound() throws Exception {
         when(userRepository.get(4L)).thenReturn(Mono.empty());
 
-        assertEquals(Mono.empty(), userService.get(4L));
+        StepVerifier.create(userService.get(4L)).verifyComplete();
+    }
+
+    @Test
+    public void getCoalesced() throws Exception {
+        User user = User.builder()
+                .id(1L)
+                .name("Ivan")
+                .email("ivan@ya.ru")
+                .build();
+
+        when(userRepository.get(1L)).thenReturn(Mono.delay(Duration.ofMillis(100)).thenReturn(user));
+
+        assertEquals(List.of(user, user), Flux.merge(userService.get(1L), userService.get(1L)).collectList().block());
+        verify(userRepository, times(1)).get(1L);
     }
 
     @Test
@@ -85,27 +134,16 @@ class UserServiceTests {
     @Test
     public void updateOk() throws Exception {
         User user = User.builder()
-                .id(1L)
-                .name("Ivan")
-                .email("ivan@ya.ru")
-                .build();
-
-        Mono<User> monoUser = Mono.just(user);
-
-        when(userRepository.get(1L)).thenReturn(monoUser);
-        when(userRepository.update(any(User.class))).thenReturn(monoUser);
-
-        assertEquals(user, userService.update(user).block());
-        verify(userRepository,  times(0)).update(user);
-
-        User user_1 = User.builder()
                 .id(1L)
                 .name("Ivanov")
                 .email("ivan@gmail.com")
                 .build();
 
-        assertEquals(user_1, userService.update(user_1).block());
-        verify(userRepository,  times(1)).update(user_1);
+        when(userRepository.update(any(User.class))).thenReturn(Mono.just(user));
+
+        assertEquals(user, userService.update(user).block());
+        verify(userRepository, times(1)).update(user);
+        verify(userRepository, never()).get(anyLong());
     }
 
     @Test
@@ -116,24 +154,25 @@ class UserServiceTests {
                 .email("ivan@gmail.com")
                 .build();
 
-        when(userRepository.get(4L)).thenReturn(Mono.empty());
+        when(userRepository.update(any(User.class))).thenReturn(Mono.empty());
 
         assertNull(userService.update(user).block());
     }
 
     @Test
     public void deleteOk() throws Exception {
-        when(userRepository.get(1L)).thenReturn(Mono.just(new User()));
         when(userRepository.delete(1L)).thenReturn(Mono.just(true));
 
         assertEquals(Boolean.TRUE, userService.delete(1L).block());
+        verify(userRepository, never()).get(anyLong());
     }
 
     @Test
     public void deleteNotFound() throws Exception {
-        when(userRepository.get(4L)).thenReturn(Mono.empty());
+        when(userRepository.delete(4L)).thenReturn(Mono.just(false));
 
         assertEquals(Boolean.FALSE, userService.delete(4L).block());
+        verify(userRepository, never()).get(anyLong());
     }
 
     @Test
@@ -152,8 +191,203 @@ class UserServiceTests {
 
         List<User> users = List.of(user, user_1);
 
-        when(userRepository.getAll()).thenReturn(Flux.fromIterable(users));
+        when(userRepository.getAll(0L, 10)).thenReturn(Flux.fromIterable(users));
+
+        assertEquals(users, userService.getAll(0L, 10).toStream().toList());
+    }
+
+    @Test
+    public void exportOk() throws Exception {
+        User user = User.builder()
+                .id(1L)
+                .name("Ivan")
+                .email("ivan@ya.ru")
+                .build();
+
+        when(userRepository.stream(anyInt())).thenReturn(Flux.just(user));
+
+        assertEquals(List.of(user), userService.export().toStream().toList());
+    }
+
+    @Test
+    public void bulkOk() throws Exception {
+        BulkOperationDTO create = BulkOperationDTO.builder()
+                .op(BulkOperationDTO.Operation.CREATE)
+                .name("Ivan")
+                .email("ivan@ya.ru")
+                .build();
+
+        BulkOperationDTO delete = BulkOperationDTO.builder()
+                .op(BulkOperationDTO.Operation.DELETE)
+                .id(4L)
+                .build();
+
+        when(userRepository.bulk(List.of(create, delete))).thenReturn(Mono.just(List.of(
+                BulkResultDTO.builder().op(BulkOperationDTO.Operation.CREATE).status(200).id(1L).build(),
+                BulkResultDTO.builder().op(BulkOperationDTO.Operation.DELETE).status(404).id(4L).build())));
+
+        List<BulkResultDTO> results = userService.bulk(Flux.just(create, delete)).collectList().block();
+
+        assertNotNull(results);
+        assertEquals(List.of(0L, 1L), results.stream().map(BulkResultDTO::getIndex).toList());
+        assertEquals(List.of(200, 404), results.stream().map(BulkResultDTO::getStatus).toList());
+    }
+
+    @Test
+    public void getAbsentId() throws Exception {
+        when(userExistenceFilter.isIdAbsent(4L)).thenReturn(true);
+
+        assertNull(userService.get(4L).block());
+        verify(userRepository, never()).get(anyLong());
+    }
+
+    @Test
+    public void createPossiblyTakenEmail() throws Exception {
+        UserRequestDTO userRequestDTO = UserRequestDTO.builder()
+                .name("Ivan")
+                .email("ivan@ya.ru")
+                .build();
+
+        when(userExistenceFilter.isEmailPossiblyTaken("ivan@ya.ru")).thenReturn(true);
+        when(userRepository.existsByEmail("ivan@ya.ru")).thenReturn(Mono.just(true));
+
+        assertThrows(ConstraintViolationException.class, () -> userService.create(userRequestDTO).block());
+        verify(userRepository, never()).create(any(User.class));
+
+        User user = UserUtils.toUser(userRequestDTO);
+        user.setId(1L);
+
+        when(userRepository.existsByEmail("ivan@ya.ru")).thenReturn(Mono.just(false));
+        when(userRepository.create(any(User.class))).thenReturn(Mono.just(user));
+
+        assertEquals(user, userService.create(userRequestDTO).block());
+        verify(userExistenceFilter).add(user);
+    }
+
+    @Test
+    public void getAllByIdOk() throws Exception {
+        User user = User.builder()
+                .id(1L)
+                .name("Ivan")
+                .email("ivan@ya.ru")
+                .build();
+
+        User user_1 = User.builder()
+                .id(2L)
+                .name("Petr")
+                .email("petr@ya.ru")
+                .build();
+
+        when(userRepository.getAllById(Set.of(1L, 2L, 4L))).thenReturn(Flux.just(user, user_1));
+
+        assertEquals(List.of(user_1, user), userService.getAllById(List.of(2L, 4L, 1L, 2L)).collectList().block());
+    }
+
+    @Test
+    public void getBatched() throws Exception {
+        User user = User.builder()
+                .id(1L)
+                .name("Ivan")
+                .email("ivan@ya.ru")
+                .build();
+
+        BatchingProperties properties = new BatchingProperties();
+        properties.setEnabled(true);
+        properties.setWindow(Duration.ofMillis(50));
+        UserBatchLoader loader = new UserBatchLoader(properties, userRepository, readYourWrites, new SimpleMeterRegistry());
+
+        when(userRepository.getAllById(Set.of(1L, 4L))).thenReturn(Flux.just(user));
+
+        assertEquals(List.of(user), Flux.merge(loader.get(1L), loader.get(4L)).collectList().block());
+        verify(userRepository, times(1)).getAllById(any());
+        verify(userRepository, never()).get(anyLong());
+    }
+
+    @Test
+    public void getBatchedAfterFailedDispatch() throws Exception {
+        User user = User.builder()
+                .id(1L)
+                .name("Ivan")
+                .email("ivan@ya.ru")
+                .build();
+
+        BatchingProperties properties = new BatchingProperties();
+        properties.setEnabled(true);
+        properties.setWindow(Duration.ofMillis(50));
+        UserBatchLoader loader = new UserBatchLoader(properties, userRepository, readYourWrites, new SimpleMeterRegistry());
+
+        when(userRepository.getAllById(Set.of(1L)))
+                .thenThrow(new IllegalStateException("Broken batch"))
+                .thenReturn(Flux.just(user));
+
+        StepVerifier.create(loader.get(1L)).expectError(IllegalStateException.class).verify(Duration.ofSeconds(5));
+        assertEquals(user, loader.get(1L).block(Duration.ofSeconds(5)));
+    }
+
+    @Test
+    public void createCoalesced() throws Exception {
+        CreateBatchingProperties properties = new CreateBatchingProperties();
+        properties.setEnabled(true);
+        properties.setWindow(Duration.ofMillis(50));
+        UserCreateCoalescer coalescer = new UserCreateCoalescer(properties, userRepository, readYourWrites, new SimpleMeterRegistry());
+
+        when(userRepository.bulk(any())).thenReturn(Mono.just(List.of(
+                BulkResultDTO.builder().op(BulkOperationDTO.Operation.CREATE).status(200).id(1L).build(),
+                BulkResultDTO.builder().op(BulkOperationDTO.Operation.CREATE).status(400).message(BulkResultDTO.NOT_UNIQUE_EMAIL).build())));
+
+        Context ivan = Context.of(ReadYourWrites.CLIENT_KEY, "client-ivan");
+        Context petr = Context.of(ReadYourWrites.CLIENT_KEY, "client-petr");
+        Mono<User> first = coalescer.create(new User("Ivan", "ivan@ya.ru")).contextWrite(ivan).cache();
+        Mono<User> second = coalescer.create(new User("Petr", "ivan@ya.ru")).contextWrite(petr).cache();
+        first.subscribe(u -> {}, e -> {});
+        second.subscribe(u -> {}, e -> {});
+
+        assertEquals(new User(1L, "Ivan", "ivan@ya.ru"), first.block());
+        StepVerifier.create(second).expectError(ConstraintViolationException.class).verify();
+        verify(userRepository, times(1)).bulk(any());
+        verify(userRepository, never()).create(any());
+        assertTrue(readYourWrites.isPinned(ivan));
+        assertFalse(readYourWrites.isPinned(petr));
+    }
+
+    @Test
+    public void createCoalescedAfterFailedDispatch() throws Exception {
+        CreateBatchingProperties properties = new CreateBatchingProperties();
+        properties.setEnabled(true);
+        properties.setWindow(Duration.ofMillis(50));
+        UserCreateCoalescer coalescer = new UserCreateCoalescer(properties, userRepository, readYourWrites, new SimpleMeterRegistry());
+
+        when(userRepository.bulk(any()))
+                .thenThrow(new IllegalStateException("Broken batch"))
+                .thenReturn(Mono.just(List.of(
+                        BulkResultDTO.builder().op(BulkOperationDTO.Operation.CREATE).status(200).id(1L).build())));
+
+        StepVerifier.create(coalescer.create(new User("Ivan", "ivan@ya.ru")))
+                .expectError(IllegalStateException.class)
+                .verify(Duration.ofSeconds(5));
+        assertEquals(new User(1L, "Ivan", "ivan@ya.ru"), coalescer.create(new User("Ivan", "ivan@ya.ru")).block(Duration.ofSeconds(5)));
+    }
+
+    @Test
+    public void getBatchedPinned() throws Exception {
+        User user = User.builder()
+                .id(1L)
+                .name("Ivan")
+                .email("ivan@ya.ru")
+                .build();
+
+        BatchingProperties properties = new BatchingProperties();
+        properties.setEnabled(true);
+        properties.setWindow(Duration.ofMillis(50));
+        UserBatchLoader loader = new UserBatchLoader(properties, userRepository, readYourWrites, new SimpleMeterRegistry());
+
+        when(userRepository.getAllById(Set.of(1L))).thenReturn(Flux.deferContextual(context ->
+                context.getOrDefault(ReadYourWrites.PRIMARY, false) ? Flux.just(user) : Flux.empty()));
+
+        Context client = Context.of(ReadYourWrites.CLIENT_KEY, "client-1");
+        assertNull(loader.get(1L).contextWrite(client).block());
 
-        assertEquals(users, userService.getAll().toStream().toList());
+        readYourWrites.pin(client);
+        assertEquals(user, loader.get(1L).contextWrite(client).block());
     }
 }
@@ -0,0 +1,185 @@
+package com.example.userapi;
+
+import com.example.userapi.controller.UserController;
+import com.example.userapi.dto.UserRequestDTO;
+import com.example.userapi.entity.User;
+import com.example.userapi.service.UserService;
+import org.flywaydb.core.Flyway;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.MediaType;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.springframework.test.web.reactive.server.EntityExchangeResult;
+import org.springframework.test.web.reactive.server.WebTestClient;
+import org.testcontainers.containers.PostgreSQLContainer;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Runs every {@link UserIntegrationTests} case against the sharded repository, with the test
+ * database as coordinator and two databases of a second container as shards, plus the cases
+ * that only make sense with more than one shard.
+ */
+@ActiveProfiles("sharded")
+class UserShardedIntegrationTests extends UserIntegrationTests {
+
+    private static final List<String> SHARDS = List.of("userapi_shard_0", "userapi_shard_1");
+
+    private static final PostgreSQLContainer<?> shardContainer = new PostgreSQLContainer<>("postgres:latest")
+            .withDatabaseName("userapi_shards")
+            .withUsername("user")
+            .withPassword("passwd");
+
+    static {
+        shardContainer.start();
+        try (Connection connection = DriverManager.getConnection(shardContainer.getJdbcUrl(), "user", "passwd");
+             Statement statement = connection.createStatement()) {
+            for (String shard : SHARDS) statement.execute("CREATE DATABASE " + shard);
+        } catch (SQLException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    @DynamicPropertySource
+    static void shardingProperties(DynamicPropertyRegistry registry) {
+        registry.add("users.sharding.urls", () -> String.join(",", SHARDS.stream().map(UserShardedIntegrationTests::shardUrl).toList()));
+        registry.add("users.sharding.user", () -> "user");
+        registry.add("users.sharding.password", () -> "passwd");
+    }
+
+    @Autowired
+    private UserService userService;
+
+    @Autowired
+    private WebTestClient webClient;
+
+    @BeforeEach
+    void setUpShards() {
+        for (String shard : SHARDS) {
+            Flyway flyway = Flyway.configure().cleanDisabled(false)
+                    .dataSource(shardUrl(shard), "user", "passwd")
+                    .load();
+            flyway.clean();
+            flyway.migrate();
+        }
+    }
+
+    @Test
+    public void usersSpreadOverShards() throws Exception {
+        List<User> users = createUsers(20);
+
+        List<Long> first = shardIds(SHARDS.get(0));
+        List<Long> second = shardIds(SHARDS.get(1));
+        assertThat(first).isNotEmpty();
+        assertThat(second).isNotEmpty();
+        assertThat(first).doesNotContainAnyElementsOf(second);
+        assertThat(concat(first, second)).containsExactlyInAnyOrderElementsOf(users.stream().map(User::getId).toList());
+
+        for (User user : users) {
+            webClient.get().uri("/users/{id}", user.getId())
+                    .exchange()
+                    .expectStatus().isOk()
+                    .expectBody()
+                    .jsonPath("$.email").isEqualTo(user.getEmail());
+        }
+    }
+
+    @Test
+    public void getAllMergesShards() throws Exception {
+        List<Long> ids = createUsers(20).stream().map(User::getId).sorted().toList();
+
+        List<Long> paged = new ArrayList<>();
+        String cursor = null;
+        do {
+            String after = cursor;
+            EntityExchangeResult<List<User>> page = webClient.get()
+                    .uri(uri -> {
+                        uri.path("/users").queryParam("limit", 3);
+                        if (after != null) uri.queryParam("after", after);
+                        return uri.build();
+                    })
+                    .accept(MediaType.APPLICATION_JSON)
+                    .exchange()
+                    .expectStatus().isOk()
+                    .expectBodyList(User.class)
+                    .returnResult();
+            assertThat(page.getResponseBody()).isNotNull().hasSizeLessThanOrEqualTo(3);
+            page.getResponseBody().forEach(user -> paged.add(user.getId()));
+            cursor = page.getResponseHeaders().getFirst(UserController.NEXT_CURSOR_HEADER);
+        } while (cursor != null);
+
+        assertThat(paged).containsExactlyElementsOf(ids);
+    }
+
+    @Test
+    public void emailDirectorySpansShards() throws Exception {
+        List<User> users = createUsers(20);
+        Long onFirst = shardIds(SHARDS.get(0)).get(0);
+        Long onSecond = shardIds(SHARDS.get(1)).get(0);
+        String takenEmail = users.stream().filter(user -> user.getId().equals(onFirst)).findFirst().orElseThrow().getEmail();
+
+        webClient.put().uri("/users")
+                .bodyValue(new User(onSecond, "Petr", takenEmail))
+                .exchange()
+                .expectStatus().isBadRequest()
+                .expectBody()
+                .jsonPath("$.message").isEqualTo("Not unique email");
+
+        webClient.post().uri("/users")
+                .bodyValue(new UserRequestDTO("Petr", takenEmail))
+                .exchange()
+                .expectStatus().isBadRequest()
+                .expectBody()
+                .jsonPath("$.message").isEqualTo("Not unique email");
+
+        webClient.put().uri("/users")
+                .bodyValue(new User(onFirst, "Ivan", "ivan@ya.ru"))
+                .exchange()
+                .expectStatus().isOk();
+
+        webClient.put().uri("/users")
+                .bodyValue(new User(onSecond, "Petr", takenEmail))
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody()
+                .jsonPath("$.email").isEqualTo(takenEmail);
+    }
+
+    private List<User> createUsers(int count) {
+        return IntStream.range(0, count)
+                .mapToObj(i -> userService.create(new UserRequestDTO("User " + i, "user" + i + "@ya.ru")).block())
+                .toList();
+    }
+
+    private static List<Long> shardIds(String shard) throws SQLException {
+        List<Long> ids = new ArrayList<>();
+        try (Connection connection = DriverManager.getConnection(shardUrl(shard), "user", "passwd");
+             Statement statement = connection.createStatement();
+             ResultSet rows = statement.executeQuery("SELECT id FROM users ORDER BY id")) {
+            while (rows.next()) ids.add(rows.getLong(1));
+        }
+        return ids;
+    }
+
+    private static List<Long> concat(List<Long> first, List<Long> second) {
+        List<Long> all = new ArrayList<>(first);
+        all.addAll(second);
+        return all;
+    }
+
+    private static String shardUrl(String shard) {
+        return "jdbc:postgresql://localhost:" + shardContainer.getFirstMappedPort() + "/" + shard;
+    }
+}
@@ -0,0 +1,120 @@
+package com.example.userapi.codec;
+
+import com.example.userapi.entity.User;
+import org.junit.jupiter.api.Test;
+import org.reactivestreams.Publisher;
+import org.springframework.core.ResolvableType;
+import org.springframework.core.codec.Encoder;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferUtils;
+import org.springframework.core.io.buffer.DefaultDataBufferFactory;
+import org.springframework.http.MediaType;
+import org.springframework.http.codec.json.Jackson2JsonEncoder;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.stream.LongStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Checks that {@link UserJsonEncoder} writes the same bytes as Jackson.
+ */
+class UserJsonEncoderTests {
+
+    private static final ResolvableType USER = ResolvableType.forClass(User.class);
+
+    private final UserJsonEncoder encoder = new UserJsonEncoder();
+    private final Jackson2JsonEncoder jackson = new Jackson2JsonEncoder();
+
+    @Test
+    public void escapingLikeJackson() {
+        StringBuilder control = new StringBuilder();
+        for (char c = 0; c < 0x20; c++) control.append(c);
+        assertSameAsJackson(List.of(
+                new User(1L, "Say \"hi\" \\ bye", "a/b@ya.ru", 0L),
+                new User(2L, control.toString(), "\u007f  @ya.ru", 1L)));
+    }
+
+    @Test
+    public void nullsLikeJackson() {
+        assertSameAsJackson(List.of(
+                new User(null, null, null, null),
+                new User(1L, "Ivan", null, null),
+                new User(2L, null, "ivan@ya.ru", 3L)));
+    }
+
+    @Test
+    public void nonAsciiLikeJackson() {
+        assertSameAsJackson(List.of(
+                new User(1L, "Иван Петров", "иван@почта.рф", 0L),
+                new User(2L, "Zoë 日本 😀", "zoe@ya.ru", 0L)));
+    }
+
+    @Test
+    public void emptyLikeJackson() {
+        assertSameAsJackson(List.of());
+        assertThat(encode(encoder, Flux.empty(), MediaType.APPLICATION_JSON)).isEqualTo("[]");
+    }
+
+    @Test
+    public void chunkBoundariesLikeJackson() {
+        for (int size : new int[]{1, UserJsonEncoder.CHUNK_SIZE - 1, UserJsonEncoder.CHUNK_SIZE,
+                UserJsonEncoder.CHUNK_SIZE + 1, 2 * UserJsonEncoder.CHUNK_SIZE + 1}) {
+            assertSameAsJackson(users(size));
+        }
+    }
+
+    @Test
+    public void singleValueLikeJackson() {
+        User user = new User(1L, "Ivan \"Ivanov\"", "ivan@ya.ru", 0L);
+        assertThat(encode(encoder, Mono.just(user), MediaType.APPLICATION_JSON))
+                .isEqualTo(encode(jackson, Mono.just(user), MediaType.APPLICATION_JSON));
+    }
+
+    @Test
+    public void errorBeforeFirstRow() {
+        for (MediaType mediaType : List.of(MediaType.APPLICATION_JSON, MediaType.APPLICATION_NDJSON)) {
+            for (Encoder<?> each : List.<Encoder<?>>of(encoder, jackson)) {
+                StepVerifier.create(encodeBuffers(each, Flux.error(new IllegalStateException("boom")), mediaType))
+                        .expectErrorMessage("boom")
+                        .verify();
+            }
+        }
+    }
+
+    private void assertSameAsJackson(List<User> users) {
+        for (MediaType mediaType : List.of(MediaType.APPLICATION_JSON, MediaType.APPLICATION_NDJSON)) {
+            assertThat(encode(encoder, Flux.fromIterable(users), mediaType))
+                    .as("%s of %d users", mediaType, users.size())
+                    .isEqualTo(encode(jackson, Flux.fromIterable(users), mediaType));
+        }
+    }
+
+    private static String encode(Encoder<?> encoder, Publisher<User> users, MediaType mediaType) {
+        return DataBufferUtils.join(encodeBuffers(encoder, users, mediaType))
+                .map(joined -> {
+                    try {
+                        return joined.toString(StandardCharsets.UTF_8);
+                    } finally {
+                        DataBufferUtils.release(joined);
+                    }
+                })
+                .defaultIfEmpty("")
+                .block();
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Flux<DataBuffer> encodeBuffers(Encoder<?> encoder, Publisher<User> users, MediaType mediaType) {
+        return ((Encoder<User>) encoder).encode(users, DefaultDataBufferFactory.sharedInstance, USER, mediaType, null);
+    }
+
+    private static List<User> users(int count) {
+        return LongStream.rangeClosed(1, count)
+                .mapToObj(id -> new User(id, "User " + id, "user" + id + "@ya.ru", id))
+                .toList();
+    }
+}